@@ -0,0 +1,66 @@
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Class EngineBenchmark
+ * Measures generations per second of the bit engine from 32^3 to 512^3 cells.
+ * Every iteration advances the same random grid by the same number of generations, so numbers can be compared between runs.
+ * The score is the time of one batch of EngineHarness.GENERATIONS generations.
+ * Report turns it into generations per second and nanoseconds per cell.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = EngineHarness.GENERATIONS)
+@Measurement(iterations = 10, batchSize = EngineHarness.GENERATIONS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class EngineBenchmark
+{
+  @Param({"32", "64", "128", "256", "512"})
+  public int size;
+
+  @Param({"1", "10", "30"})
+  public int density;
+
+  @Param({"3/3/3/2", "3/4/7/2"})
+  public String rules;
+
+  @Param({"moore"})
+  public String neighborhood;
+
+  @Param({"1"})
+  public int threads;
+
+  private EngineHarness harness;
+
+  @Setup(Level.Trial)
+  public void createEngine() throws Throwable
+  {
+    harness = new EngineHarness("bit", size, density, rules, neighborhood, threads);
+  }
+
+  @Setup(Level.Iteration)
+  public void seedEngine() throws Throwable
+  {
+    harness.seed();
+  }
+
+  @Benchmark
+  public void step() throws Throwable
+  {
+    harness.step();
+  }
+}
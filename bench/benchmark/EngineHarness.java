@@ -0,0 +1,90 @@
+package benchmark;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Random;
+
+/**
+ * Class EngineHarness
+ * Creates and seeds a LifeEngine for the benchmarks.
+ * JMH cannot generate benchmarks in the default package, and classes in a package cannot import the default package
+ * the game lives in, so the engines are created and driven through method handles.
+ */
+class EngineHarness
+{
+  static final int GENERATIONS = 32;   //Generations measured from each freshly seeded grid
+  private static final long RANDOM_SEED = 42;
+  private final Object engine;
+  private final MethodHandle step;
+  private final MethodHandle setAlive;
+  private final MethodHandle clear;
+  private final int size;
+  private final int density;
+
+  /**
+   * Class Constructor
+   * @param engineName  bit, incremental, dense, vector, sparse or octree
+   * @param size  Number of cells along each axis
+   * @param density Percentage of living cells in the starting grid
+   * @param rules Rules written as R1/R2/R3/R4 or in B/S notation
+   * @param neighborhood  von-neumann, 18, moore or radius-2
+   * @param threads Number of threads used by the bit engine
+   */
+  EngineHarness(String engineName, int size, int density, String rules, String neighborhood, int threads) throws Throwable
+  {
+    this.size = size;
+    this.density = density;
+
+    MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+    Class<?> rulesClass = Class.forName("LifeRules");
+    Class<?> engineTypeClass = Class.forName("EngineType");
+    Class<?> engineClass = Class.forName("LifeEngine");
+    Class<?> neighborhoodClass = Class.forName("Neighborhood");
+
+    Object lifeRules = lookup.findStatic(rulesClass, "parse", MethodType.methodType(rulesClass, String.class)).invoke(rules);
+    Object engineType = lookup.findStatic(engineTypeClass, "fromName",
+        MethodType.methodType(engineTypeClass, String.class)).invoke(engineName);
+    Object lifeNeighborhood = lookup.findStatic(neighborhoodClass, "fromName",
+        MethodType.methodType(neighborhoodClass, String.class)).invoke(neighborhood);
+    engine = lookup.findVirtual(engineTypeClass, "create",
+        MethodType.methodType(engineClass, int.class, int.class, int.class, rulesClass, neighborhoodClass, int.class))
+        .invoke(engineType, size, size, size, lifeRules, lifeNeighborhood, threads);
+
+    step = lookup.findVirtual(engineClass, "step", MethodType.methodType(void.class)).bindTo(engine);
+    clear = lookup.findVirtual(engineClass, "clear", MethodType.methodType(void.class)).bindTo(engine);
+    setAlive = lookup.findVirtual(engineClass, "setAlive",
+        MethodType.methodType(void.class, int.class, int.class, int.class, boolean.class)).bindTo(engine);
+  }
+
+  /**
+   * Clears the engine and fills it with the same random cells every time.
+   */
+  void seed() throws Throwable
+  {
+    Random rand = new Random(RANDOM_SEED);
+    clear.invokeExact();
+
+    for(int i = 0; i < size; i++) //For every x
+    {
+      for(int j = 0; j < size; j++) //For every z
+      {
+        for(int k = 0; k < size; k++) //For every y
+        {
+          if(rand.nextInt(100) < density)
+          {
+            setAlive.invokeExact(i, j, k, true);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Advances the engine one generation.
+   */
+  void step() throws Throwable
+  {
+    step.invokeExact();
+  }
+}
@@ -0,0 +1,43 @@
+package benchmark;
+
+import java.util.Collection;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Class Report
+ * Runs the benchmarks with the usual JMH command line options, then prints every result as generations per second
+ * and nanoseconds per cell per generation.
+ */
+public class Report
+{
+  public static void main(String[] args) throws Exception
+  {
+    Collection<RunResult> results = new Runner(new CommandLineOptions(args)).run();
+
+    System.out.println();
+    System.out.printf("%-32s %-7s %5s %8s %-8s %7s %16s %14s%n",
+        "Benchmark", "Engine", "Size", "Density", "Rules", "Threads", "Generations/s", "ns/cell");
+
+    for(RunResult result : results)
+    {
+      String name = result.getParams().getBenchmark();
+      String engine = param(result, "engine", "bit");
+      int size = Integer.parseInt(param(result, "size", "0"));
+      double microsPerGeneration = result.getPrimaryResult().getScore()/EngineHarness.GENERATIONS;  //The score is the time of a whole batch
+      double cells = (double)size*size*size;
+
+      System.out.printf("%-32s %-7s %5d %7s%% %-8s %7s %16.1f %14.4f%n",
+          name.substring(name.lastIndexOf('.', name.lastIndexOf('.') - 1) + 1), engine, size,
+          param(result, "density", "?"), param(result, "rules", "?"), param(result, "threads", "1"),
+          1e6/microsPerGeneration, microsPerGeneration*1000/cells);
+    }
+  }
+
+  private static String param(RunResult result, String key, String defaultValue)
+  {
+    String value = result.getParams().getParam(key);
+    return value != null ? value : defaultValue;
+  }
+}
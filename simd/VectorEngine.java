@@ -0,0 +1,393 @@
+import java.util.Arrays;
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Public class VectorEngine
+ * A LifeEngine that runs the separable box sums of DenseEngine on the vectors of the Java Vector API, a whole vector of
+ * cells (64 with AVX-512) per instruction. The rules are applied without a lookup table, by comparing the sums with
+ * the ranges of neighbor counts that give birth and survive.
+ * Needs the jdk.incubator.vector module, so it is built separately from the simd directory and created through
+ * EngineType, which falls back to DenseEngine when it is missing.
+ * Cells and sums are one byte per cell in rows along the x axis indexed z then y like a GridStore. Rows are padded to
+ * a whole number of vectors, and the border is as wide as the radius of the Neighborhood.
+ * Like DenseEngine the grid is advanced in bands of rows along the y axis, so the plane sums of a band stay in the cache.
+ */
+public class VectorEngine implements LifeEngine
+{
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final int LANES = SPECIES.length();
+  private static final int CELLS = 0;   //A plane sum that is just the cells of the plane
+  private static final int CROSS = 1;   //A cell and the 4 cells next to it along x and y
+  private static final int BOX = 2;   //The square of cells within the radius along x and y
+  private static final int BAND_BYTES = 128 << 10;  //Sums held for a band of rows, small enough for the L2 cache
+  private static final int MIN_BAND_ROWS = 8;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int padding;
+  private final int vectorWidth;  //Cells of a row rounded up to a whole number of vectors
+  private final int rowLength;
+  private final int planeLength;
+  private final boolean[] insideRow;  //True for the cells of a row that are in the grid
+  private final int bandRows;   //Rows along y advanced together
+  private final Neighborhood neighborhood;
+  private final int centerSum;  //Kind of plane sum taken in the plane of the cell
+  private final int outerSum;   //Kind of plane sum taken in the planes above and below the cell
+  private byte[] cells;   //1 for a living cell
+  private byte[] nextCells;
+  private final byte[] rowSums;   //Sums along x of the rows of a band and the rows within the radius, for the sum along y
+  private final byte[][] planeSums;   //Ring of outer plane sums of a band, one for every plane within the radius
+  private final byte[] centerPlaneSum;
+  private LifeRules rules;
+  private byte[] birthRanges;   //First and last sum of each range of sums that gives birth to a dead cell
+  private byte[] survivalRanges;  //First and last sum of each range of sums that keeps a living cell alive
+  private long population;
+  private long generation;
+
+  /**
+   * Returns a boolean value indicating if the hardware has vectors of at least 16 bytes. The Vector API still runs
+   * without them, but slower than DenseEngine.
+   * @return boolean supported
+   */
+  public static boolean isSupported()
+  {
+    return LANES >= 16;
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors
+   */
+  public VectorEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.neighborhood = neighborhood;
+    padding = neighborhood.getRadius();
+    vectorWidth = (width + LANES - 1)/LANES*LANES;
+    rowLength = vectorWidth + 2*padding;
+    planeLength = rowLength*(depth + 2*padding);
+    long cellCount = (long)planeLength*(height + 2*padding);
+
+    if(cellCount > Integer.MAX_VALUE - 8)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid does not fit in a single array");
+    }
+
+    insideRow = new boolean[vectorWidth];
+    Arrays.fill(insideRow, 0, width, true);
+
+    switch(neighborhood)  //Every neighborhood is a stack of plane sums
+    {
+      case VON_NEUMANN:
+        centerSum = CROSS;
+        outerSum = CELLS;
+        break;
+      case EDGES:
+        centerSum = BOX;
+        outerSum = CROSS;
+        break;
+      default:
+        centerSum = BOX;
+        outerSum = BOX;
+        break;
+    }
+
+    bandRows = Math.min(depth, Math.max(MIN_BAND_ROWS, BAND_BYTES/(rowLength*(2*padding + 3))));
+    int bandLength = bandRows*rowLength;
+    cells = new byte[(int)cellCount];
+    nextCells = new byte[cells.length];
+    rowSums = new byte[bandLength + 2*padding*rowLength];
+    planeSums = new byte[2*padding + 1][bandLength];
+    centerPlaneSum = centerSum == outerSum ? null : new byte[bandLength];
+    setRules(rules);
+  }
+
+  private int index(int i, int j, int k)
+  {
+    return (j + padding)*planeLength + (k + padding)*rowLength + i + padding;
+  }
+
+  /**
+   * Changes the rules used to advance the grid.
+   * @param rules Specifies the new rules
+   */
+  public void setRules(LifeRules rules)
+  {
+    this.rules = rules;
+    birthRanges = toRanges(rules, false);
+    survivalRanges = toRanges(rules, true);
+  }
+
+  /**
+   * Returns the ranges of sums of the neighborhood and the cell itself that give a living cell in the next generation.
+   * The sum of a living cell counts the cell too, so its ranges are one higher than its neighbor counts.
+   */
+  private byte[] toRanges(LifeRules rules, boolean alive)
+  {
+    byte[] ranges = new byte[2*neighborhood.getSize() + 2];
+    int count = 0;
+
+    for(int neighbors = 0; neighbors <= neighborhood.getSize(); neighbors++)
+    {
+      if(rules.nextState(alive, neighbors) && (neighbors == 0 || !rules.nextState(alive, neighbors - 1)))
+      {
+        ranges[count++] = (byte)(neighbors + (alive ? 1 : 0));
+        ranges[count++] = (byte)(neighbors + (alive ? 1 : 0));
+      }
+      else if(rules.nextState(alive, neighbors))   //Extends the current range
+      {
+        ranges[count - 1]++;
+      }
+    }
+    return Arrays.copyOf(ranges, count);
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    return cells[index(i, j, k)] != 0;
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    int index = index(i, j, k);
+
+    if((cells[index] != 0) != state)
+    {
+      cells[index] = (byte)(state ? 1 : 0);
+      population += state ? 1 : -1;
+    }
+  }
+
+  public void clear()
+  {
+    Arrays.fill(cells, (byte)0);
+    population = 0;
+    generation = 0;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return population;
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.clear();
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        int row = index(0, j, k);
+
+        for(int i = 0; i < width; i++) //For every x
+        {
+          if(cells[row + i] != 0)
+          {
+            target.setAlive(i, j, k, true);
+          }
+        }
+      }
+    }
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    clear();
+    source.forEachLiveCell((i, j, k) -> setAlive(i, j, k, true));
+    this.generation = generation;
+  }
+
+  public void step()
+  {
+    long nextPopulation = 0;
+
+    for(int firstK = 0; firstK < depth; firstK += bandRows) //For every band of rows along y
+    {
+      nextPopulation += stepBand(firstK, Math.min(firstK + bandRows, depth));
+    }
+
+    byte[] swap = cells;
+    cells = nextCells;
+    nextCells = swap;
+    population = nextPopulation;
+    generation++;
+  }
+
+  /**
+   * Writes the next generation of the rows from firstK to lastK in every plane and returns its population.
+   */
+  private long stepBand(int firstK, int lastK)
+  {
+    int ringSize = planeSums.length;
+    long bandPopulation = 0;
+
+    for(int j = -padding; j < padding; j++)  //The planes below the first plane
+    {
+      sumPlane(outerSum, j, firstK, lastK, planeSums[j + padding]);
+    }
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      sumPlane(outerSum, j + padding, firstK, lastK, planeSums[(j + 2*padding)%ringSize]);
+      byte[] center = planeSums[(j + padding)%ringSize];
+
+      if(centerPlaneSum != null)
+      {
+        sumPlane(centerSum, j, firstK, lastK, centerPlaneSum);
+        center = centerPlaneSum;
+      }
+
+      for(int k = firstK; k < lastK; k++) //For every y in the band
+      {
+        int bandRow = (k - firstK)*rowLength + padding;
+        int row = (j + padding)*planeLength + (k + padding)*rowLength + padding;
+
+        for(int x = 0; x < vectorWidth; x += LANES)
+        {
+          ByteVector total = ByteVector.fromArray(SPECIES, center, bandRow + x);
+
+          for(int d = 1; d <= padding; d++)  //Adds the planes above and below
+          {
+            total = total.add(ByteVector.fromArray(SPECIES, planeSums[(j + padding - d)%ringSize], bandRow + x))
+                .add(ByteVector.fromArray(SPECIES, planeSums[(j + padding + d)%ringSize], bandRow + x));
+          }
+
+          VectorMask<Byte> alive = ByteVector.fromArray(SPECIES, cells, row + x).compare(VectorOperators.NE, 0);
+          VectorMask<Byte> next = inRanges(total, birthRanges).andNot(alive).or(inRanges(total, survivalRanges).and(alive))
+              .and(VectorMask.fromArray(SPECIES, insideRow, x));
+          ByteVector.zero(SPECIES).blend((byte)1, next).intoArray(nextCells, row + x);
+          bandPopulation += next.trueCount();
+        }
+      }
+    }
+    return bandPopulation;
+  }
+
+  private static VectorMask<Byte> inRanges(ByteVector sums, byte[] ranges)
+  {
+    VectorMask<Byte> inside = SPECIES.maskAll(false);
+
+    for(int r = 0; r < ranges.length; r += 2)
+    {
+      inside = inside.or(sums.compare(VectorOperators.GE, ranges[r]).and(sums.compare(VectorOperators.LE, ranges[r + 1])));
+    }
+    return inside;
+  }
+
+  /**
+   * Sums the cells of a band of a plane along x and y. The sums of row k are written at (k - firstK)*rowLength, with
+   * the same padding along x as the row.
+   * @param kind  CELLS, CROSS or BOX
+   * @param j The plane, which is all dead if it is in the border
+   * @param firstK  The first row of the band
+   * @param lastK The row after the band
+   * @param sums  Receives the sums
+   */
+  private void sumPlane(int kind, int j, int firstK, int lastK, byte[] sums)
+  {
+    int bandLength = (lastK - firstK)*rowLength;
+
+    if(j < 0 || j >= height)
+    {
+      Arrays.fill(sums, 0, bandLength, (byte)0);
+      return;
+    }
+
+    int band = (j + padding)*planeLength + (firstK + padding)*rowLength;  //First cell of the band in the plane
+
+    if(kind == CELLS)
+    {
+      System.arraycopy(cells, band, sums, 0, bandLength);
+      return;
+    }
+
+    int reach = kind == CROSS ? 1 : padding;
+    int rowReach = kind == CROSS ? 0 : padding;   //Rows around the band summed along x, the cross adds cells instead
+    int rowSumStart = padding*rowLength;  //Where the row sums of the band start, after the rows within the radius
+
+    for(int r = -rowReach; r < lastK - firstK + rowReach; r++) //Sums along x
+    {
+      int row = band + r*rowLength + padding;
+      int sumRow = rowSumStart + r*rowLength + padding;
+
+      for(int x = 0; x < vectorWidth; x += LANES)
+      {
+        ByteVector sum = ByteVector.fromArray(SPECIES, cells, row + x);
+
+        for(int d = 1; d <= reach; d++)
+        {
+          sum = sum.add(ByteVector.fromArray(SPECIES, cells, row + x - d))
+              .add(ByteVector.fromArray(SPECIES, cells, row + x + d));
+        }
+        sum.intoArray(rowSums, sumRow + x);
+      }
+    }
+
+    for(int r = 0; r < lastK - firstK; r++) //Sums along y
+    {
+      int row = band + r*rowLength + padding;
+      int sumRow = rowSumStart + r*rowLength + padding;
+      int bandRow = r*rowLength + padding;
+
+      for(int x = 0; x < vectorWidth; x += LANES)
+      {
+        ByteVector sum = ByteVector.fromArray(SPECIES, rowSums, sumRow + x);
+
+        if(kind == CROSS)  //The row sum plus the cells on the rows next to it
+        {
+          sum = sum.add(ByteVector.fromArray(SPECIES, cells, row + x - rowLength))
+              .add(ByteVector.fromArray(SPECIES, cells, row + x + rowLength));
+        }
+        else
+        {
+          for(int d = 1; d <= padding; d++)
+          {
+            sum = sum.add(ByteVector.fromArray(SPECIES, rowSums, sumRow + x - d*rowLength))
+                .add(ByteVector.fromArray(SPECIES, rowSums, sumRow + x + d*rowLength));
+          }
+        }
+        sum.intoArray(sums, bandRow + x);
+      }
+    }
+  }
+}
@@ -0,0 +1,127 @@
+import java.util.Arrays;
+
+/**
+ * Public class BitGrid
+ * A GridStore that packs the grid into a single long[] on the heap.
+ */
+public class BitGrid implements GridStore
+{
+  private static final int PADDING = 1;   //Border needed by neighborhoods with a radius of 1
+  private final int padding;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int wordsPerRow;
+  private final int rowsPerPlane;
+  private final int rowCount;
+  private final long[] words;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   */
+  public BitGrid(int width, int height, int depth)
+  {
+    this(width, height, depth, PADDING);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param padding Number of border cells on each side, at least the radius of the Neighborhood used with the grid
+   */
+  public BitGrid(int width, int height, int depth, int padding)
+  {
+    if(getWordCount(width, height, depth, padding) > Integer.MAX_VALUE - 8)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid does not fit in a single array");
+    }
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.padding = padding;
+    wordsPerRow = (width + 2*padding + 63) >>> 6;
+    rowsPerPlane = depth + 2*padding;
+    rowCount = (height + 2*padding)*rowsPerPlane;
+    words = new long[rowCount*wordsPerRow];
+  }
+
+  /**
+   * Returns the number of words a BitGrid of this size allocates, including its border.
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @return long word count
+   */
+  public static long getWordCount(int width, int height, int depth)
+  {
+    return getWordCount(width, height, depth, PADDING);
+  }
+
+  /**
+   * Returns the number of words a BitGrid of this size allocates, including a border of the given padding.
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param padding Number of border cells on each side
+   * @return long word count
+   */
+  public static long getWordCount(int width, int height, int depth, int padding)
+  {
+    return (long)((width + 2*padding + 63) >>> 6)*(height + 2*padding)*(depth + 2*padding);
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public int getPadding()
+  {
+    return padding;
+  }
+
+  public int getWordsPerRow()
+  {
+    return wordsPerRow;
+  }
+
+  public int getRowsPerPlane()
+  {
+    return rowsPerPlane;
+  }
+
+  public int getRowCount()
+  {
+    return rowCount;
+  }
+
+  public long getWord(int index)
+  {
+    return words[index];
+  }
+
+  public void setWord(int index, long value)
+  {
+    words[index] = value;
+  }
+
+  public void clear()
+  {
+    Arrays.fill(words, 0);
+  }
+}
@@ -0,0 +1,745 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Public class BitGridEngine
+ * A LifeEngine that keeps the grid bit-packed in a pair of GridStores.
+ * Neighbors are counted 64 cells at a time: every word in the surrounding rows is fed through bitwise adders
+ * into a bit-sliced counter, so one pass over a row counts the neighbors of every cell in it.
+ * The count is separable: each row of the Neighborhood is first summed along x, with one, three or five cells
+ * depending on how far the neighborhood reaches in that row, and the row sums are then added into the counter.
+ * The grid can be split into slabs along the z axis that are advanced in parallel. The calling thread and the helpers
+ * of a ForkJoinPool take slabs from a shared counter until none are left, so the calling thread never blocks on the
+ * pool and a generation allocates nothing. Every slab only writes its own rows of the next generation, so the result
+ * is identical to advancing the grid on a single thread.
+ * The grid is also divided into tiles of one word by TILE_SIZE by TILE_SIZE rows. A cell can only change if it or one of
+ * its neighbors changed in the last generation, so tiles that did not change and hold no neighbor of a cell in a changed
+ * tile are skipped. In toroidal mode the neighbors reach across the edges, which can be more than one tile away when the
+ * last tile is thinner than the radius. Both grids already hold the same state for a skipped tile, so swapping the grids
+ * leaves it correct.
+ * In toroidal mode the border is filled with the opposite side of the grid before each generation and cleared again
+ * afterwards, so the neighbor count needs no bounds checks and grids outside the engine always have a dead border.
+ * The hash of the grid is kept up to date from the words that change in every generation, for cycle detection.
+ */
+public class BitGridEngine implements LifeEngine
+{
+  private static final int MAX_COUNT_BITS = 7;  //Enough bits to count a cell and its 124 neighbors
+  private static final int TILE_SIZE = 8;   //Rows along the z and y axes in a tile
+  private GridStore currentGrid;
+  private GridStore nextGrid;
+  private final Neighborhood neighborhood;
+  private final int countBits;  //Bits in the counter, enough to count a cell and its neighbors
+  private LifeRules rules;
+  private long generation;
+  private long hash;  //GridStore.hashWords() of the current grid
+  private int[] birthTotals;
+  private int[] survivalTotals;
+  private long[] interiorMask;
+  private int[] singleRows;  //Offsets to the rows that count a single cell along x
+  private int[] tripleRows;   //Offsets to the rows that count three cells along x
+  private int[] quintupleRows;  //Offsets to the rows that count five cells along x
+  private int tilesJ;
+  private int tilesK;
+  private boolean[] changedTiles;   //Tiles that changed in the last generation
+  private boolean[] nextChangedTiles;
+  private int[][] tilesAroundJ;   //Tiles along z holding a neighbor of a cell in each tile
+  private int[][] tilesAroundK;
+  private int[][] wordsAround;
+  private boolean tileSkipping = true;
+  private boolean toroidal;
+  private final long[] serialCounter = new long[MAX_COUNT_BITS];
+  private ForkJoinPool pool;
+  private Slab[] slabs;
+  private SlabHelper[] helpers;
+  private final AtomicInteger nextSlab = new AtomicInteger();   //Next slab to be taken in this generation
+  private final AtomicInteger finishedSlabs = new AtomicInteger();
+  private volatile Throwable slabFailure;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   */
+  public BitGridEngine(int width, int height, int depth, LifeRules rules)
+  {
+    this(width, height, depth, rules, Neighborhood.MOORE);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors
+   */
+  public BitGridEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    this(new BitGrid(width, height, depth, neighborhood.getRadius()), new BitGrid(width, height, depth, neighborhood.getRadius()),
+        rules, neighborhood);
+  }
+
+  /**
+   * Class Constructor
+   * @param currentGrid Specifies the GridStore holding the current generation
+   * @param nextGrid  Specifies the GridStore the next generation is written to. Must match currentGrid.
+   * @param rules Specifies the rules used to advance the grid
+   */
+  public BitGridEngine(GridStore currentGrid, GridStore nextGrid, LifeRules rules)
+  {
+    this(currentGrid, nextGrid, rules, Neighborhood.MOORE);
+  }
+
+  /**
+   * Class Constructor
+   * @param currentGrid Specifies the GridStore holding the current generation
+   * @param nextGrid  Specifies the GridStore the next generation is written to. Must match currentGrid.
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors. The padding of the grids must be at least its radius.
+   */
+  public BitGridEngine(GridStore currentGrid, GridStore nextGrid, LifeRules rules, Neighborhood neighborhood)
+  {
+    if(currentGrid.getWidth() != nextGrid.getWidth() || currentGrid.getHeight() != nextGrid.getHeight()
+        || currentGrid.getDepth() != nextGrid.getDepth() || currentGrid.getPadding() != nextGrid.getPadding())
+    {
+      throw new IllegalArgumentException("Grid dimensions do not match");
+    }
+
+    if(currentGrid.getPadding() < neighborhood.getRadius())
+    {
+      throw new IllegalArgumentException("The " + neighborhood.getName() + " neighborhood needs a padding of " + neighborhood.getRadius());
+    }
+
+    this.currentGrid = currentGrid;
+    this.nextGrid = nextGrid;
+    this.neighborhood = neighborhood;
+    countBits = 32 - Integer.numberOfLeadingZeros(neighborhood.getSize() + 1);
+    currentGrid.clear();
+    nextGrid.clear();
+    setRules(rules);
+
+    int padding = currentGrid.getPadding();
+    interiorMask = new long[currentGrid.getWordsPerRow()];  //Keeps the border dead when writing a row
+
+    for(int x = padding; x < padding + currentGrid.getWidth(); x++)
+    {
+      interiorMask[x >>> 6] |= 1L << x;
+    }
+
+    int rowsPerPlane = currentGrid.getRowsPerPlane();
+    int radius = neighborhood.getRadius();
+    int[][] rowsByReach = new int[3][(2*radius + 1)*(2*radius + 1)];
+    int[] rowCounts = new int[3];
+
+    for(int dj = -radius; dj <= radius; dj++) //Sort the rows around the cell, the row itself included, by their reach
+    {
+      for(int dk = -radius; dk <= radius; dk++)
+      {
+        int reach = neighborhood.getRowReach(dj, dk);
+
+        if(reach >= 0)
+        {
+          rowsByReach[reach][rowCounts[reach]++] = dj*rowsPerPlane + dk;
+        }
+      }
+    }
+    singleRows = Arrays.copyOf(rowsByReach[0], rowCounts[0]);
+    tripleRows = Arrays.copyOf(rowsByReach[1], rowCounts[1]);
+    quintupleRows = Arrays.copyOf(rowsByReach[2], rowCounts[2]);
+
+    tilesJ = (currentGrid.getHeight() + TILE_SIZE - 1)/TILE_SIZE;
+    tilesK = (currentGrid.getDepth() + TILE_SIZE - 1)/TILE_SIZE;
+    changedTiles = new boolean[tilesJ*tilesK*currentGrid.getWordsPerRow()];
+    nextChangedTiles = new boolean[changedTiles.length];
+    findTilesAround();
+    markAllTilesChanged();
+  }
+
+  /**
+   * Forces every tile to be evaluated in the next generation.
+   * Needed whenever the grid was not produced by the current rules, since an empty tile may still give birth to cells.
+   */
+  private void markAllTilesChanged()
+  {
+    Arrays.fill(changedTiles, true);
+  }
+
+  /**
+   * Changes the rules used to advance the grid.
+   * The counter includes the cell itself, so a living cell with n neighbors survives when the counter reads n + 1.
+   * @param rules Specifies the new rules
+   */
+  public void setRules(LifeRules rules)
+  {
+    int births = 0;
+    int survivals = 0;
+    int[] birthBuffer = new int[neighborhood.getSize() + 1];
+    int[] survivalBuffer = new int[neighborhood.getSize() + 1];
+
+    for(int neighbors = 0; neighbors <= neighborhood.getSize(); neighbors++)
+    {
+      if(rules.isBorn(neighbors))
+      {
+        birthBuffer[births++] = neighbors;
+      }
+
+      if(rules.survives(neighbors))
+      {
+        survivalBuffer[survivals++] = neighbors + 1;
+      }
+    }
+
+    this.rules = rules;
+    birthTotals = Arrays.copyOf(birthBuffer, births);
+    survivalTotals = Arrays.copyOf(survivalBuffer, survivals);
+
+    if(changedTiles != null)
+    {
+      markAllTilesChanged();
+    }
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  /**
+   * Sets whether the grid wraps around, so cells on one side of the grid are neighbors of the cells on the opposite side.
+   * @param toroidal  true for a grid that wraps around, false for a grid surrounded by dead cells
+   */
+  public void setToroidal(boolean toroidal)
+  {
+    int padding = currentGrid.getPadding();
+
+    if(toroidal && (getWidth() < padding || getHeight() < padding || getDepth() < padding))
+    {
+      throw new IllegalArgumentException("A toroidal grid must be at least " + padding + " cells along each axis");
+    }
+    this.toroidal = toroidal;
+    findTilesAround();
+    markAllTilesChanged();
+  }
+
+  public boolean isToroidal()
+  {
+    return toroidal;
+  }
+
+  /**
+   * Sets whether tiles that cannot change are skipped. Evaluating every tile gives the same generations more slowly, and
+   * is only useful to check the tiles that are skipped.
+   * @param tileSkipping  true to only evaluate the tiles around the tiles that changed, false to evaluate every tile
+   */
+  public void setTileSkipping(boolean tileSkipping)
+  {
+    this.tileSkipping = tileSkipping;
+  }
+
+  /**
+   * Sets the number of threads used to advance the grid.
+   * @param threads Number of threads. 1 advances the grid on the calling thread.
+   */
+  public void setParallelism(int threads)
+  {
+    if(threads < 1)
+    {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+
+    if(pool != null)
+    {
+      pool.shutdown();
+      pool = null;
+      slabs = null;
+      helpers = null;
+    }
+
+    if(threads > 1)
+    {
+      int slabCount = Math.min(tilesJ, threads*4);  //A few slabs per thread so uneven slabs balance out
+      slabs = new Slab[slabCount];
+
+      for(int s = 0; s < slabCount; s++)  //Slabs are whole tiles thick so each tile belongs to a single slab
+      {
+        slabs[s] = new Slab(tilesJ*s/slabCount, tilesJ*(s + 1)/slabCount);
+      }
+      helpers = new SlabHelper[threads - 1];  //The calling thread advances slabs as well
+
+      for(int h = 0; h < helpers.length; h++)
+      {
+        helpers[h] = new SlabHelper();
+      }
+      pool = new ForkJoinPool(helpers.length);
+    }
+  }
+
+  /**
+   * Returns the number of threads used to advance the grid.
+   * @return int parallelism
+   */
+  public int getParallelism()
+  {
+    return pool == null ? 1 : helpers.length + 1;
+  }
+
+  public void dispose()
+  {
+    setParallelism(1);
+    currentGrid.dispose();
+    nextGrid.dispose();
+  }
+
+  public int getWidth()
+  {
+    return currentGrid.getWidth();
+  }
+
+  public int getHeight()
+  {
+    return currentGrid.getHeight();
+  }
+
+  public int getDepth()
+  {
+    return currentGrid.getDepth();
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    return currentGrid.isAlive(i, j, k);
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    int w = (i + currentGrid.getPadding()) >>> 6;
+    int index = currentGrid.rowIndex(j, k)*currentGrid.getWordsPerRow() + w;
+    long word = currentGrid.getWord(index);
+    currentGrid.setAlive(i, j, k, state);
+    hash ^= GridStore.hashWord(index, word) ^ GridStore.hashWord(index, currentGrid.getWord(index));
+    changedTiles[((j/TILE_SIZE)*tilesK + k/TILE_SIZE)*currentGrid.getWordsPerRow() + w] = true;
+  }
+
+  public void clear()
+  {
+    currentGrid.clear();
+    nextGrid.clear();
+    markAllTilesChanged();
+    generation = 0;
+    hash = 0;
+  }
+
+  /**
+   * Returns the number of tiles that changed in the last generation.
+   * @return int changed tiles
+   */
+  public int countChangedTiles()
+  {
+    int changed = 0;
+
+    for(int t = 0; t < changedTiles.length; t++)
+    {
+      if(changedTiles[t])
+      {
+        changed++;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * Returns the total number of tiles in the grid.
+   * @return int tiles
+   */
+  public int getTileCount()
+  {
+    return changedTiles.length;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  /**
+   * Returns the hash of the current generation, which is GridStore.hashWords() of the grid, kept up to date in every
+   * generation without reading the words that did not change.
+   * @return long hash
+   */
+  public long getHash()
+  {
+    return hash;
+  }
+
+  public long getPopulation()
+  {
+    return currentGrid.countAlive();
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.copyFrom(currentGrid);
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    currentGrid.copyFrom(source);
+    markAllTilesChanged();
+    this.generation = generation;
+    hash = currentGrid.hashWords();
+  }
+
+  public void step()
+  {
+    if(toroidal)
+    {
+      currentGrid.wrapBorder();
+    }
+
+    if(pool == null)
+    {
+      hash ^= updateSlab(0, tilesJ, serialCounter);
+    }
+    else
+    {
+      advanceSlabs();
+
+      for(int s = 0; s < slabs.length; s++)
+      {
+        hash ^= slabs[s].hashChange;
+      }
+    }
+
+    if(toroidal)
+    {
+      currentGrid.clearBorder();
+    }
+
+    GridStore oldGrid = currentGrid;
+    currentGrid = nextGrid;
+    nextGrid = oldGrid;
+    boolean[] oldTiles = changedTiles;
+    changedTiles = nextChangedTiles;
+    nextChangedTiles = oldTiles;
+    generation++;
+  }
+
+  /**
+   * Advances every slab on the calling thread and the helpers, and waits for the slabs still advanced by a helper.
+   * A helper that is still finishing the last generation is not started again, it takes slabs of this one instead.
+   */
+  private void advanceSlabs()
+  {
+    finishedSlabs.set(0);
+    nextSlab.set(0);  //Publishes the swapped grids to the helpers taking slabs
+
+    for(int h = 0; h < helpers.length; h++)
+    {
+      if(helpers[h].isDone())
+      {
+        helpers[h].reinitialize();
+        pool.execute(helpers[h]);
+      }
+    }
+    takeSlabs(serialCounter);
+
+    while(finishedSlabs.get() < slabs.length)   //Only the slabs taken by a helper are left, so the wait is short
+    {
+      Thread.yield();
+    }
+
+    Throwable failure = slabFailure;
+
+    if(failure != null)
+    {
+      slabFailure = null;
+      throw new IllegalStateException("A slab could not be advanced", failure);
+    }
+  }
+
+  /**
+   * Advances slabs until none are left to take.
+   */
+  private void takeSlabs(long[] counter)
+  {
+    for(int s = nextSlab.getAndIncrement(); s < slabs.length; s = nextSlab.getAndIncrement())
+    {
+      try
+      {
+        slabs[s].hashChange = updateSlab(slabs[s].fromTileJ, slabs[s].toTileJ, counter);
+      }
+      catch(RuntimeException | Error e)   //Reported by the calling thread, which would otherwise wait forever
+      {
+        slabFailure = e;
+      }
+      finally
+      {
+        finishedSlabs.incrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Advances the rows of the tiles from fromTileJ to toTileJ and returns the change of the hash of the grid.
+   */
+  private long updateSlab(int fromTileJ, int toTileJ, long[] counter)
+  {
+    int wordsPerRow = currentGrid.getWordsPerRow();
+    long hashChange = 0;
+
+    for(int tj = fromTileJ; tj < toTileJ; tj++) //For every row of tiles along z in the slab
+    {
+      int lastJ = Math.min((tj + 1)*TILE_SIZE, currentGrid.getHeight());
+
+      for(int tk = 0; tk < tilesK; tk++) //For every row of tiles along y
+      {
+        int lastK = Math.min((tk + 1)*TILE_SIZE, currentGrid.getDepth());
+
+        for(int w = 0; w < wordsPerRow; w++) //For every word along x
+        {
+          int tile = (tj*tilesK + tk)*wordsPerRow + w;
+
+          if(!isTileActive(tj, tk, w))
+          {
+            nextChangedTiles[tile] = false;
+            continue;
+          }
+
+          long changed = 0;
+
+          for(int j = tj*TILE_SIZE; j < lastJ; j++)
+          {
+            for(int k = tk*TILE_SIZE; k < lastK; k++)
+            {
+              int row = currentGrid.rowIndex(j, k);
+              long changedBits = updateWord(row, w, counter);
+
+              if(changedBits != 0)  //Bits of the border are not part of the hash
+              {
+                int index = row*wordsPerRow + w;
+                long next = nextGrid.getWord(index);
+                hashChange ^= GridStore.hashWord(index, (next ^ changedBits) & interiorMask[w]) ^ GridStore.hashWord(index, next);
+              }
+              changed |= changedBits;
+            }
+          }
+          nextChangedTiles[tile] = changed != 0;
+        }
+      }
+    }
+    return hashChange;
+  }
+
+  /**
+   * Returns a boolean value indicating if a tile or any tile within reach of its neighborhood changed in the last
+   * generation.
+   */
+  private boolean isTileActive(int tj, int tk, int w)
+  {
+    if(!tileSkipping)
+    {
+      return true;
+    }
+
+    int wordsPerRow = currentGrid.getWordsPerRow();
+
+    for(int j : tilesAroundJ[tj])
+    {
+      for(int k : tilesAroundK[tk])
+      {
+        for(int x : wordsAround[w])
+        {
+          if(changedTiles[(j*tilesK + k)*wordsPerRow + x])
+          {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds the tiles along each axis that hold a neighbor of a cell in each tile. In toroidal mode a neighborhood that
+   * reaches across the edge of the grid reaches the tiles on the opposite side, including the second to last tile when
+   * the last one is thinner than the radius.
+   */
+  private void findTilesAround()
+  {
+    tilesAroundJ = findTilesAround(currentGrid.getHeight(), 0, TILE_SIZE, tilesJ);
+    tilesAroundK = findTilesAround(currentGrid.getDepth(), 0, TILE_SIZE, tilesK);
+    wordsAround = findTilesAround(currentGrid.getWidth(), currentGrid.getPadding(), 64, currentGrid.getWordsPerRow());
+  }
+
+  /**
+   * Returns the tiles around every tile along one axis, the tile itself included.
+   * @param cells Number of cells along the axis
+   * @param offset  Position of the first cell in the first tile
+   * @param tileSize  Number of cells in a tile
+   * @param tiles Number of tiles along the axis
+   */
+  private int[][] findTilesAround(int cells, int offset, int tileSize, int tiles)
+  {
+    int radius = neighborhood.getRadius();
+    int[][] tilesAround = new int[tiles][];
+    boolean[] found = new boolean[tiles];
+
+    for(int t = 0; t < tiles; t++)
+    {
+      Arrays.fill(found, false);
+      found[t] = true;
+      int count = 1;
+      int first = Math.max(t*tileSize - offset, 0);
+      int last = Math.min((t + 1)*tileSize - offset, cells) - 1;
+
+      for(int c = first - radius; first <= last && c <= last + radius; c++)  //A tile of only border has no neighbors
+      {
+        int cell = toroidal ? Math.floorMod(c, cells) : c;
+
+        if(cell >= 0 && cell < cells && !found[(cell + offset)/tileSize])
+        {
+          found[(cell + offset)/tileSize] = true;
+          count++;
+        }
+      }
+      tilesAround[t] = new int[count];
+
+      for(int n = 0, i = 0; n < tiles; n++)
+      {
+        if(found[n])
+        {
+          tilesAround[t][i++] = n;
+        }
+      }
+    }
+    return tilesAround;
+  }
+
+  /**
+   * Writes the next generation of a single word and returns the bits that changed.
+   */
+  private long updateWord(int row, int w, long[] counter)
+  {
+    int wordsPerRow = currentGrid.getWordsPerRow();
+
+    for(int b = 0; b < countBits; b++)
+    {
+      counter[b] = 0;
+    }
+
+    for(int n = 0; n < singleRows.length; n++)
+    {
+      addToCounter(counter, currentGrid.getWord((row + singleRows[n])*wordsPerRow + w), 0);
+    }
+
+    for(int n = 0; n < tripleRows.length; n++)
+    {
+      int index = (row + tripleRows[n])*wordsPerRow + w;
+      long center = currentGrid.getWord(index);
+      long before = w > 0 ? currentGrid.getWord(index - 1) : 0;
+      long after = w < wordsPerRow - 1 ? currentGrid.getWord(index + 1) : 0;
+      long left = (center << 1) | (before >>> 63);   //Each bit holds the cell at x - 1
+      long right = (center >>> 1) | (after << 63);  //Each bit holds the cell at x + 1
+      long sum = left ^ center ^ right;   //Full adder over the three cells in this row
+      long carry = (left & center) | (right & (left ^ center));
+      addToCounter(counter, sum, 0);
+      addToCounter(counter, carry, 1);
+    }
+
+    for(int n = 0; n < quintupleRows.length; n++)
+    {
+      int index = (row + quintupleRows[n])*wordsPerRow + w;
+      long center = currentGrid.getWord(index);
+      long before = w > 0 ? currentGrid.getWord(index - 1) : 0;
+      long after = w < wordsPerRow - 1 ? currentGrid.getWord(index + 1) : 0;
+      long left = (center << 1) | (before >>> 63);
+      long right = (center >>> 1) | (after << 63);
+      long farLeft = (center << 2) | (before >>> 62);   //Each bit holds the cell at x - 2
+      long farRight = (center >>> 2) | (after << 62);   //Each bit holds the cell at x + 2
+      long sum = left ^ center ^ right;   //Two full adders over the five cells in this row
+      long carry = (left & center) | (right & (left ^ center));
+      long total = sum ^ farLeft ^ farRight;
+      long totalCarry = (sum & farLeft) | (farRight & (sum ^ farLeft));
+      addToCounter(counter, total, 0);
+      addToCounter(counter, carry, 1);
+      addToCounter(counter, totalCarry, 1);
+    }
+
+    int index = row*wordsPerRow + w;
+    long self = currentGrid.getWord(index);
+    long born = matchCounter(counter, birthTotals, countBits) & ~self;
+    long survived = matchCounter(counter, survivalTotals, countBits) & self;
+    long next = (born | survived) & interiorMask[w];
+    nextGrid.setWord(index, next);
+    return (next ^ self) & interiorMask[w];   //Wrapped border bits of a toroidal grid are not changes
+  }
+
+  private static void addToCounter(long[] counter, long bits, int position)
+  {
+    for(int b = position; bits != 0 && b < MAX_COUNT_BITS; b++)
+    {
+      long carry = counter[b] & bits;
+      counter[b] ^= bits;
+      bits = carry;
+    }
+  }
+
+  private static long matchCounter(long[] counter, int[] totals, int countBits)
+  {
+    long match = 0;
+
+    for(int t = 0; t < totals.length; t++)
+    {
+      long equal = -1L;
+
+      for(int b = 0; b < countBits; b++)
+      {
+        equal &= ((totals[t] >>> b) & 1) != 0 ? counter[b] : ~counter[b];
+      }
+      match |= equal;
+    }
+    return match;
+  }
+
+  /**
+   * private class Slab
+   * The rows of tiles advanced together by a single thread, with the change of the hash they made.
+   */
+  private static class Slab
+  {
+    private final int fromTileJ;
+    private final int toTileJ;
+    private long hashChange;
+
+    private Slab(int fromTileJ, int toTileJ)
+    {
+      this.fromTileJ = fromTileJ;
+      this.toTileJ = toTileJ;
+    }
+  }
+
+  /**
+   * private class SlabHelper
+   * extends RecursiveAction
+   * Takes slabs on a thread of the pool. Each helper keeps its own counter so helpers can run at the same time.
+   */
+  private class SlabHelper extends RecursiveAction
+  {
+    private static final long serialVersionUID = 1L;
+    private final long[] helperCounter = new long[MAX_COUNT_BITS];
+
+    protected void compute()
+    {
+      takeSlabs(helperCounter);
+    }
+  }
+}
@@ -5,21 +5,44 @@ import javafx.scene.shape.Box;
 /**
  * Public class Cell
  * A cell has its own lifecycle behavior and occupies a single point on a grid.
+ * Colors and sizes come from a palette shared by every cell, so animating a cell never allocates.
  * Created by John on 9/23/2016.
  */
 public class Cell
 {
   private static final int MAXBOXSIZE = 14;
   private static final int MINBOXSIZE = 2;
+  private static final double SIZE_STEP = 0.6;
+  private static final int MAXSIZESTEP = 20;  //Number of steps to grow from MINBOXSIZE to MAXBOXSIZE
+  private static final int COLOR_STEP = 5;    //Every red and green value a cell can reach is a multiple of 5
+  private static final double[] BOX_SIZES = new double[MAXSIZESTEP + 1];
+  private static final PhongMaterial[][] MATERIALS = new PhongMaterial[250/COLOR_STEP + 1][250/COLOR_STEP + 1];
   private boolean growing;
   private boolean shrinking;
   private boolean stable;
   private boolean alive;
   private Box cellBox;
-  private PhongMaterial cellMaterial = new PhongMaterial();
-  private Color cellColor;
   private int redValue = 250;
   private int greenValue = 250;
+  private int sizeStep = 0;
+  private int shownSizeStep = 0;
+  private PhongMaterial shownMaterial;
+
+  static
+  {
+    for(int step = 0; step <= MAXSIZESTEP; step++)
+    {
+      BOX_SIZES[step] = MINBOXSIZE + step*SIZE_STEP;
+    }
+
+    for(int red = 0; red < MATERIALS.length; red++)
+    {
+      for(int green = 0; green < MATERIALS[red].length; green++)
+      {
+        MATERIALS[red][green] = new PhongMaterial(Color.rgb(red*COLOR_STEP, green*COLOR_STEP, 0));
+      }
+    }
+  }
 
   /**
    * Class Constructor
@@ -30,10 +53,25 @@ public class Cell
     growing = false;
     shrinking = false;
     stable = false;
-    cellColor = Color.rgb(redValue,greenValue,0);
-    cellMaterial.setDiffuseColor(cellColor);
-    cellBox = new Box(2,2,2);
-    cellBox.setMaterial(cellMaterial);
+    cellBox = new Box(MINBOXSIZE,MINBOXSIZE,MINBOXSIZE);
+    showColor();
+    cellBox.setVisible(false);
+  }
+
+  /**
+   * Kills the cell at once, without shrinking, so the cell can be reused by a new game.
+   */
+  protected void reset()
+  {
+    alive = false;
+    growing = false;
+    shrinking = false;
+    stable = false;
+    redValue = 250;
+    greenValue = 250;
+    sizeStep = 0;
+    showColor();
+    showSize();
     cellBox.setVisible(false);
   }
 
@@ -98,11 +136,9 @@ public class Cell
         stable = true;
         redValue = 0;
         greenValue = 250;
-        cellColor = Color.rgb(redValue,greenValue,0);
-        cellMaterial.setDiffuseColor(cellColor);
-        cellBox.setDepth(MAXBOXSIZE);
-        cellBox.setWidth(MAXBOXSIZE);
-        cellBox.setHeight(MAXBOXSIZE);
+        sizeStep = MAXSIZESTEP;
+        showColor();
+        showSize();
       }
     }
     else
@@ -137,14 +173,12 @@ public class Cell
   {
     if(alive && !stable)
     {
-      double currentHeight = cellBox.getHeight();
-
       if(growing)
       {
-        if(currentHeight < MAXBOXSIZE)
-          currentHeight += 0.6;
+        if(sizeStep < MAXSIZESTEP)
+          sizeStep++;
 
-        if(currentHeight >= MAXBOXSIZE-2)
+        if(BOX_SIZES[sizeStep] >= MAXBOXSIZE-2)
         {
           if(redValue >= 25)
             redValue -= 25;
@@ -156,8 +190,8 @@ public class Cell
 
       if(shrinking)
       {
-        if(currentHeight > MINBOXSIZE)
-          currentHeight -= 0.6;
+        if(sizeStep > 0)
+          sizeStep--;
 
         if(redValue <= 240)
           redValue += 10;
@@ -166,11 +200,31 @@ public class Cell
           greenValue -= 10;
       }
 
-      cellColor = Color.rgb(redValue,greenValue,0);
-      cellMaterial.setDiffuseColor(cellColor);
-      cellBox.setDepth(currentHeight);
-      cellBox.setHeight(currentHeight);
-      cellBox.setWidth(currentHeight);
+      showColor();
+      showSize();
+    }
+  }
+
+  private void showColor()
+  {
+    PhongMaterial material = MATERIALS[redValue/COLOR_STEP][greenValue/COLOR_STEP];
+
+    if(material != shownMaterial)
+    {
+      cellBox.setMaterial(material);
+      shownMaterial = material;
+    }
+  }
+
+  private void showSize()
+  {
+    if(sizeStep != shownSizeStep)
+    {
+      double size = BOX_SIZES[sizeStep];
+      cellBox.setDepth(size);
+      cellBox.setHeight(size);
+      cellBox.setWidth(size);
+      shownSizeStep = sizeStep;
     }
   }
 }
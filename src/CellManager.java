@@ -1,5 +1,8 @@
 import javafx.animation.AnimationTimer;
 import javafx.scene.shape.Box;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -9,60 +12,119 @@ import java.util.Random;
  */
 public class CellManager
 {
-  private static int MAXWIDTH;
-  private static int MAXHEIGHT;
-  private static int MAXDEPTH;
-  private int generationCounter;
+  private static final long MAX_ANIMATED_CELLS = 50*50*50;  //Larger grids are always drawn as meshes
+  private static final int SHOWN_GRIDS = 6;   //Two in the engine, three snapshots and the shown grid
+  private static final long OFF_HEAP_GRID_BYTES = 64L << 20;  //Larger grids of the engine are stored off the heap
+  private int MAXWIDTH;
+  private int MAXHEIGHT;
+  private int MAXDEPTH;
+  private final GridSize gridSize;
+  private long generationCounter;
   private float densityPercentage;
   private int R1;
   private int R2;
   private int R3;
   private int R4;
   private Random rand = new Random();
-  private boolean[][][] currentGrid;
-  private boolean[][][] nextGrid;
+  private LifeEngine engine;
   private Cell[][][] cellGroup;
+  private CellMeshRenderer meshRenderer;
   private Xform cellGroupXform;
   private MainGameLoop gameEngine;
+  private SimulationRunner simulationRunner;
+  private Checkpointer checkpointer;
+  private GridStore shownGrid;    //The generation currently shown by the cells
+  private boolean[] settlingWords;  //Words that changed in the last shown generation
   private GameOfLife application;
+  private GridFile snapshotFile;  //The snapshot the game starts from instead of a preset, or null
   private boolean xRotate = true;
   private boolean yRotate = true;
   private boolean zRotate = true;
+  private boolean disposed;
 
   /**
    * Class Constructor
    * @param application Specifies the GameOfLife application to use the CellManager
    * @param cellGroupXform  Specifies the Xform to contain the cells that the application will render.
+   * @param gridSize  Specifies the number of cells along each axis of the grid
    * @param R1  Specifies the value of Rule: 1 for Conway's Game of Life
    * @param R2  Specifies the value of Rule: 2 for Conway's Game of Life
    * @param R3  Specifies the value of Rule: 3 for Conway's Game of Life
    * @param R4  Specifies the value of Rule: 4 for Conway's Game of Life
    */
-  public CellManager(GameOfLife application, Xform cellGroupXform, int R1, int R2, int R3, int R4)
+  public CellManager(GameOfLife application, Xform cellGroupXform, GridSize gridSize, int R1, int R2, int R3, int R4)
+  {
+    this(application, cellGroupXform, gridSize, R1, R2, R3, R4, null);
+  }
+
+  /**
+   * Class Constructor for a game that continues from a snapshot, with the rules and the neighborhood of the snapshot.
+   * @param application Specifies the GameOfLife application to use the CellManager
+   * @param cellGroupXform  Specifies the Xform to contain the cells that the application will render.
+   * @param snapshotFile  Specifies the snapshot to start from
+   */
+  public CellManager(GameOfLife application, Xform cellGroupXform, GridFile snapshotFile)
+  {
+    this(application, cellGroupXform, new GridSize(snapshotFile.getWidth(), snapshotFile.getHeight(), snapshotFile.getDepth()),
+        0, 0, 0, 0, snapshotFile);
+  }
+
+  private CellManager(GameOfLife application, Xform cellGroupXform, GridSize gridSize, int R1, int R2, int R3, int R4,
+      GridFile snapshotFile)
   {
     generationCounter = 0;
     densityPercentage = 0;
-    MAXWIDTH = 31;
-    MAXHEIGHT = 31;
-    MAXDEPTH = 31;
-    currentGrid = new boolean[MAXWIDTH + 1][MAXHEIGHT + 1][MAXDEPTH + 1];  //Current state of generation in the grid
-    nextGrid = new boolean[MAXWIDTH + 1][MAXHEIGHT + 1][MAXDEPTH + 1];   //The state of the next generation
-    cellGroup = new Cell[MAXWIDTH + 1][MAXHEIGHT + 1][MAXDEPTH + 1];  //Array of cells[x][z][y]
+    this.gridSize = gridSize;
+    MAXWIDTH = gridSize.getWidth() + 1;
+    MAXHEIGHT = gridSize.getHeight() + 1;
+    MAXDEPTH = gridSize.getDepth() + 1;
     this.application = application;
     this.cellGroupXform = cellGroupXform;
     this.R1 = R1;
     this.R2 = R2;
     this.R3 = R3;
     this.R4 = R4;
-    initializeCellGroup();  //Make a new cell for every point on the grid
+    this.snapshotFile = snapshotFile;
+    System.out.println(gridSize.describeMemory(SHOWN_GRIDS));
+
+    if(!application.renderMesh.isSelected() && gridSize.getCellCount() > MAX_ANIMATED_CELLS)
+    {
+      System.out.println("Too many cells to animate, drawing the grid as a mesh");
+      application.renderMesh.setSelected(true);
+    }
+
+    if(application.renderMesh.isSelected())
+    {
+      initializeMesh();
+    }
+    else
+    {
+      initializeCellGroup();  //Make a new cell for every point on the grid
+    }
+    shownGrid = new BitGrid(engine.getWidth(), engine.getHeight(), engine.getDepth());
+    settlingWords = new boolean[shownGrid.getRowCount()*shownGrid.getWordsPerRow()];
+    Arrays.fill(settlingWords, true);   //Every seeded cell still has to finish growing
+    simulationRunner = new SimulationRunner(engine, application.getGenerationsPerSecond());
+    simulationRunner.setCycleDetector(new CycleDetector(CycleDetector.DEFAULT_HISTORY));
+    simulationRunner.start();
     gameEngine = new MainGameLoop();
     setGameEngineState(true);
   }
 
+  private void initializeMesh()
+  {
+    getPreset();
+    meshRenderer = new CellMeshRenderer(cellGroupXform, engine.getWidth(), engine.getHeight(), engine.getDepth());
+    GridStore seededGrid = new BitGrid(engine.getWidth(), engine.getHeight(), engine.getDepth());
+    engine.copyTo(seededGrid);
+    meshRenderer.update(seededGrid);
+  }
+
   private void initializeCellGroup()
   {
     Cell newCell;
     Box newCellBox;
+    cellGroup = new Cell[MAXWIDTH + 1][MAXHEIGHT + 1][MAXDEPTH + 1];  //Array of cells[x][z][y]
 
     for(int i = 1; i<MAXWIDTH; i++) //For every x
     {
@@ -85,579 +147,345 @@ public class CellManager
 
   private void addLiveCell(int i, int j, int k)
   {
-    cellGroup[i][j][k].setAlive(true);
-    currentGrid[i][j][k] = true;
+    if(cellGroup != null)
+    {
+      cellGroup[i][j][k].setAlive(true);
+    }
+
+    if(k < MAXDEPTH)  //Cells beyond a restricted depth are shown but never updated
+    {
+      engine.setAlive(i - 1, j - 1, k - 1, true);
+    }
   }
 
-  private void initializePresetRandom()
+  private void getPreset()
   {
-    int nxtRand;
+    if(snapshotFile != null)
+    {
+      loadSnapshot();
+      return;
+    }
 
-    for(int i = 1; i<MAXWIDTH; i++) //For every x
+    Preset preset = getSelectedPreset();
+    applyPresetSettings(preset);
+    engine = createEngine(new LifeRules(R1, R2, R3, R4), getSelectedNeighborhood(), application.wrapAround.isSelected());
+    seedPreset(preset);
+  }
+
+  private void seedPreset(Preset preset)
+  {
+    preset.seed(MAXWIDTH - 1, MAXHEIGHT - 1, MAXDEPTH - 1, rand, (i, j, k) ->
+    {
+      if(i >= 0 && i < MAXWIDTH - 1 && j >= 0 && j < MAXHEIGHT - 1 && k >= 0 && k < gridSize.getDepth())  //Presets are drawn for 30x30x30 grids
+      {
+        addLiveCell(i + 1, j + 1, k + 1);
+      }
+    });
+  }
+
+  /**
+   * Creates the engine from the snapshot file and shows its cells.
+   */
+  private void loadSnapshot()
+  {
+    engine = createEngine(snapshotFile.getRules(), snapshotFile.getNeighborhood(), snapshotFile.isToroidal());
+
+    try
+    {
+      snapshotFile.restore(engine);
+    }
+    catch(IOException e)
+    {
+      engine.dispose();
+      throw new IllegalArgumentException(e.getMessage(), e);
+    }
+    generationCounter = snapshotFile.getGeneration();
+    application.updateGenerationCount(generationCounter);
+
+    if(cellGroup != null)
     {
-      for (int j = 1; j < MAXHEIGHT; j++) //For every z
+      for(int i = 1; i < MAXWIDTH; i++) //For every x
       {
-        for (int k = 1; k < MAXDEPTH; k++) //For every y
-        //for(int k = 1; k<2; k++) //For every y
+        for(int j = 1; j < MAXHEIGHT; j++) //For every z
         {
-          nxtRand = rand.nextInt(100);
-          if(nxtRand==0)    //Sets 1% of random cells to alive
+          for(int k = 1; k < MAXDEPTH; k++) //For every y
           {
-            cellGroup[i][j][k].setAlive(true);
-            currentGrid[i][j][k] = true;
+            cellGroup[i][j][k].setAlive(engine.isAlive(i - 1, j - 1, k - 1));
           }
         }
       }
     }
   }
 
-  private void initializePreset2D()
+  private BitGridEngine createEngine(LifeRules rules, Neighborhood neighborhood, boolean toroidal)
   {
+    BitGridEngine bitGridEngine;
 
-    addLiveCell(14,14,16);
-    addLiveCell(15,14,16);
-    addLiveCell(14,15,16);
-    addLiveCell(15,15,16);
-    addLiveCell(14,15,15);
-    addLiveCell(15,15,15);
-    addLiveCell(14,16,15);
-    addLiveCell(15,16,15);
-    addLiveCell(14,14,14);
-    addLiveCell(15,14,14);
-
-    /*
-    //Block $
-    addLiveCell(1,1,1);
-    addLiveCell(2,1,1);
-    addLiveCell(1,2,1);
-    addLiveCell(2,2,1);
-    //Block $
-    addLiveCell(1,29,1);
-    addLiveCell(2,29,1);
-    addLiveCell(1,30,1);
-    addLiveCell(2,30,1);
-    //Block $
-    addLiveCell(29,1,1);
-    addLiveCell(29,2,1);
-    addLiveCell(30,1,1);
-    addLiveCell(30,2,1);
-    //Block $
-    addLiveCell(29,29,1);
-    addLiveCell(29,30,1);
-    addLiveCell(30,29,1);
-    addLiveCell(30,30,1);
-    //Beehive $
-    addLiveCell(2,14,1);
-    addLiveCell(1,15,1);
-    addLiveCell(1,16,1);
-    addLiveCell(3,15,1);
-    addLiveCell(3,16,1);
-    addLiveCell(2,17,1);
-    //Beehive $
-    addLiveCell(14,2,1);
-    addLiveCell(15,1,1);
-    addLiveCell(15,3,1);
-    addLiveCell(16,1,1);
-    addLiveCell(16,3,1);
-    addLiveCell(17,2,1);
-    //Beehive $
-    addLiveCell(14,29,1);
-    addLiveCell(15,28,1);
-    addLiveCell(15,30,1);
-    addLiveCell(16,28,1);
-    addLiveCell(16,30,1);
-    addLiveCell(17,29,1);
-    //Beehive $
-    addLiveCell(29,14,1);
-    addLiveCell(28,15,1);
-    addLiveCell(30,15,1);
-    addLiveCell(28,16,1);
-    addLiveCell(30,16,1);
-    addLiveCell(29,17,1);
-    //Blinker $
-    addLiveCell(2,7,1);
-    addLiveCell(2,8,1);
-    addLiveCell(2,9,1);
-    //Blinker $
-    addLiveCell(2,22,1);
-    addLiveCell(2,23,1);
-    addLiveCell(2,24,1);
-    //Blinker$
-    addLiveCell(29,7,1);
-    addLiveCell(29,8,1);
-    addLiveCell(29,9,1);
-    //Blinker$
-    addLiveCell(29,22,1);
-    addLiveCell(29,23,1);
-    addLiveCell(29,24,1);
-    //Pulsar
-    addLiveCell(9,11,1);
-    addLiveCell(9,12,1);
-    addLiveCell(9,13,1);
-    addLiveCell(9,17,1);
-    addLiveCell(9,18,1);
-    addLiveCell(9,19,1);
-
-    addLiveCell(11,9,1);
-    addLiveCell(12,9,1);
-    addLiveCell(13,9,1);
-    addLiveCell(17,9,1);
-    addLiveCell(18,9,1);
-    addLiveCell(19,9,1);
-
-    addLiveCell(11,14,1);
-    addLiveCell(12,14,1);
-    addLiveCell(13,14,1);
-    addLiveCell(17,14,1);
-    addLiveCell(18,14,1);
-    addLiveCell(19,14,1);
-
-    addLiveCell(11,16,1);
-    addLiveCell(12,16,1);
-    addLiveCell(13,16,1);
-    addLiveCell(17,16,1);
-    addLiveCell(18,16,1);
-    addLiveCell(19,16,1);
-
-    addLiveCell(11,21,1);
-    addLiveCell(12,21,1);
-    addLiveCell(13,21,1);
-    addLiveCell(17,21,1);
-    addLiveCell(18,21,1);
-    addLiveCell(19,21,1);
-
-    addLiveCell(14,11,1);
-    addLiveCell(14,12,1);
-    addLiveCell(14,13,1);
-    addLiveCell(14,17,1);
-    addLiveCell(14,18,1);
-    addLiveCell(14,19,1);
-
-    addLiveCell(16,11,1);
-    addLiveCell(16,12,1);
-    addLiveCell(16,13,1);
-    addLiveCell(16,17,1);
-    addLiveCell(16,18,1);
-    addLiveCell(16,19,1);
-
-    addLiveCell(21,11,1);
-    addLiveCell(21,12,1);
-    addLiveCell(21,13,1);
-    addLiveCell(21,17,1);
-    addLiveCell(21,18,1);
-    addLiveCell(21,19,1);
-    */
-  }
-
-  private void initializePresetCornerBeacons2D()
-  {
-    //Beacons in each corner
-    addLiveCell(1,1,1);
-    addLiveCell(1,2,1);
-    addLiveCell(1,29,1);
-    addLiveCell(1,30,1);
-
-    addLiveCell(2,1,1);
-    addLiveCell(2,2,1);
-    addLiveCell(2,29,1);
-    addLiveCell(2,30,1);
-
-    addLiveCell(29,1,1);
-    addLiveCell(29,2,1);
-    addLiveCell(29,29,1);
-    addLiveCell(29,30,1);
-
-    addLiveCell(30,1,1);
-    addLiveCell(30,2,1);
-    addLiveCell(30,29,1);
-    addLiveCell(30,30,1);
-
-    addLiveCell(3,3,1);
-    addLiveCell(3,4,1);
-    addLiveCell(3,27,1);
-    addLiveCell(3,28,1);
-
-    addLiveCell(4,3,1);
-    addLiveCell(4,4,1);
-    addLiveCell(4,27,1);
-    addLiveCell(4,28,1);
-
-    addLiveCell(27,3,1);
-    addLiveCell(27,4,1);
-    addLiveCell(27,27,1);
-    addLiveCell(27,28,1);
-
-    addLiveCell(28,3,1);
-    addLiveCell(28,4,1);
-    addLiveCell(28,27,1);
-    addLiveCell(28,28,1);
-    //Next level
-    addLiveCell(1,1,2);
-    addLiveCell(1,2,2);
-    addLiveCell(1,29,2);
-    addLiveCell(1,30,2);
-
-    addLiveCell(2,1,2);
-    addLiveCell(2,2,2);
-    addLiveCell(2,29,2);
-    addLiveCell(2,30,2);
-
-    addLiveCell(29,1,2);
-    addLiveCell(29,2,2);
-    addLiveCell(29,29,2);
-    addLiveCell(29,30,2);
-
-    addLiveCell(30,1,2);
-    addLiveCell(30,2,2);
-    addLiveCell(30,29,2);
-    addLiveCell(30,30,2);
-
-    addLiveCell(3,3,2);
-    addLiveCell(3,4,2);
-    addLiveCell(3,27,2);
-    addLiveCell(3,28,2);
-
-    addLiveCell(4,3,2);
-    addLiveCell(4,4,2);
-    addLiveCell(4,27,2);
-    addLiveCell(4,28,2);
-
-    addLiveCell(27,3,2);
-    addLiveCell(27,4,2);
-    addLiveCell(27,27,2);
-    addLiveCell(27,28,2);
-
-    addLiveCell(28,3,2);
-    addLiveCell(28,4,2);
-    addLiveCell(28,27,2);
-    addLiveCell(28,28,2);
-  }
-
-  private void initializePresetCornerBeacons3D()
-  {
-    //Beacons in each corner
-    addLiveCell(1,1,1);
-    addLiveCell(1,2,1);
-    addLiveCell(1,29,30);
-    addLiveCell(1,30,30);
-
-    addLiveCell(2,1,1);
-    addLiveCell(2,2,1);
-    addLiveCell(2,29,30);
-    addLiveCell(2,30,30);
-
-    addLiveCell(29,1,30);
-    addLiveCell(29,2,30);
-    addLiveCell(29,29,1);
-    addLiveCell(29,30,1);
-
-    addLiveCell(30,1,30);
-    addLiveCell(30,2,30);
-    addLiveCell(30,29,1);
-    addLiveCell(30,30,1);
-
-    addLiveCell(3,3,1);
-    addLiveCell(3,4,1);
-    addLiveCell(3,27,30);
-    addLiveCell(3,28,30);
-
-    addLiveCell(4,3,1);
-    addLiveCell(4,4,1);
-    addLiveCell(4,27,30);
-    addLiveCell(4,28,30);
-
-    addLiveCell(27,3,30);
-    addLiveCell(27,4,30);
-    addLiveCell(27,27,1);
-    addLiveCell(27,28,1);
-
-    addLiveCell(28,3,30);
-    addLiveCell(28,4,30);
-    addLiveCell(28,27,1);
-    addLiveCell(28,28,1);
-    //Next level
-    addLiveCell(1,1,2);
-    addLiveCell(1,2,2);
-    addLiveCell(1,29,29);
-    addLiveCell(1,30,29);
-
-    addLiveCell(2,1,2);
-    addLiveCell(2,2,2);
-    addLiveCell(2,29,29);
-    addLiveCell(2,30,29);
-
-    addLiveCell(29,1,29);
-    addLiveCell(29,2,29);
-    addLiveCell(29,29,2);
-    addLiveCell(29,30,2);
-
-    addLiveCell(30,1,29);
-    addLiveCell(30,2,29);
-    addLiveCell(30,29,2);
-    addLiveCell(30,30,2);
-
-    addLiveCell(3,3,2);
-    addLiveCell(3,4,2);
-    addLiveCell(3,27,29);
-    addLiveCell(3,28,29);
-
-    addLiveCell(4,3,2);
-    addLiveCell(4,4,2);
-    addLiveCell(4,27,29);
-    addLiveCell(4,28,29);
-
-    addLiveCell(27,3,29);
-    addLiveCell(27,4,29);
-    addLiveCell(27,27,2);
-    addLiveCell(27,28,2);
-
-    addLiveCell(28,3,29);
-    addLiveCell(28,4,29);
-    addLiveCell(28,27,2);
-    addLiveCell(28,28,2);
+    if(gridSize.getGridBytes() > OFF_HEAP_GRID_BYTES)  //Freed by dispose() when the game is reset
+    {
+      int padding = neighborhood.getRadius();
+      bitGridEngine = new BitGridEngine(new OffHeapGrid(MAXWIDTH - 1, MAXHEIGHT - 1, MAXDEPTH - 1, padding),
+          new OffHeapGrid(MAXWIDTH - 1, MAXHEIGHT - 1, MAXDEPTH - 1, padding), rules, neighborhood);
+    }
+    else
+    {
+      bitGridEngine = new BitGridEngine(MAXWIDTH - 1, MAXHEIGHT - 1, MAXDEPTH - 1, rules, neighborhood);
+    }
+    bitGridEngine.setToroidal(toroidal);
+    return bitGridEngine;
   }
 
-  private void initializePresetTwoToad()
+  private Neighborhood getSelectedNeighborhood()
   {
-    addLiveCell(2,14,1);
-    addLiveCell(3,14,1);
-    addLiveCell(4,14,1);
-    addLiveCell(27,14,1);
-    addLiveCell(28,14,1);
-    addLiveCell(29,14,1);
-
-    addLiveCell(1,15,1);
-    addLiveCell(2,15,1);
-    addLiveCell(3,15,1);
-    addLiveCell(28,15,1);
-    addLiveCell(29,15,1);
-    addLiveCell(30,15,1);
-  }
+    if(application.vonNeumann.isSelected())
+    {
+      return Neighborhood.VON_NEUMANN;
+    }
 
-  private void initializePresetPentaDeca()
-  {
-    addLiveCell(13,13,1);
-    addLiveCell(18,13,1);
-    addLiveCell(13,15,1);
-    addLiveCell(18,15,1);
-
-    addLiveCell(11,14,1);
-    addLiveCell(12,14,1);
-    addLiveCell(19,14,1);
-    addLiveCell(20,14,1);
-    addLiveCell(14,14,1);
-    addLiveCell(15,14,1);
-    addLiveCell(16,14,1);
-    addLiveCell(17,14,1);
-
-    addLiveCell(13,13,30);
-    addLiveCell(18,13,30);
-    addLiveCell(13,15,30);
-    addLiveCell(18,15,30);
-
-    addLiveCell(11,14,30);
-    addLiveCell(12,14,30);
-    addLiveCell(19,14,30);
-    addLiveCell(20,14,30);
-    addLiveCell(14,14,30);
-    addLiveCell(15,14,30);
-    addLiveCell(16,14,30);
-    addLiveCell(17,14,30);
-  }
+    if(application.edges.isSelected())
+    {
+      return Neighborhood.EDGES;
+    }
 
-  private void getPreset()
-  {
-    if(application.random.isSelected()) //Random
+    if(application.radius2.isSelected())
     {
-      initializePresetRandom();
+      return Neighborhood.MOORE_RADIUS_2;
     }
+    return Neighborhood.MOORE;
+  }
 
+  private Preset getSelectedPreset()
+  {
     if(application.preset2D.isSelected()) //Cross section w/ pulsar
     {
-      MAXDEPTH = 2;
-      initializePreset2D();
+      return Preset.CROSS_SECTION;
     }
 
     if(application.pokeball.isSelected())  //Pokeball with oscillating center
     {
-      MAXDEPTH = 3;
-      R1 = 3;
-      R2 = 4;
-      R3 = 7;
-      R4 = 2;
-      application.choiceR1.setValue(R1);
-      application.choiceR2.setValue(R2);
-      application.choiceR3.setValue(R3);
-      application.choiceR4.setValue(R4);
-      initializePresetCornerBeacons2D();
+      return Preset.POKEBALL;
     }
 
     if(application.mazeCube.isSelected())  //Symmetric Maze Cube
     {
-      R1 = 3;
-      R2 = 4;
-      R3 = 7;
-      R4 = 2;
-      application.choiceR1.setValue(R1);
-      application.choiceR2.setValue(R2);
-      application.choiceR3.setValue(R3);
-      application.choiceR4.setValue(R4);
-      initializePresetCornerBeacons3D();
+      return Preset.MAZE_CUBE;
     }
 
     if(application.twoToad.isSelected())
     {
-      initializePresetTwoToad();
+      return Preset.TWO_TOAD;
     }
 
     if(application.pentaDecathlon.isSelected())  //PentaDecathlon
     {
-      initializePresetPentaDeca();
+      return Preset.PENTADECATHLON;
     }
+    return Preset.RANDOM;
   }
 
-  private int countNeighbors(int i, int j, int k)
+  /**
+   * Applies the grid depth and rules required by the selected preset. Called before the grid is allocated.
+   */
+  private void applyPresetSettings(Preset preset)
   {
-    int neighbors = 0;
-
-    neighbors += checkSurrounding(i,j,k); //surrounding cells at cell level
+    MAXDEPTH = preset.getDepth(MAXDEPTH - 1) + 1;
 
-    if(neighbors <= R3)
-      neighbors += checkSurrounding(i,j,k-1); //surrounding cells at level below
+    if(preset.hasRules())
+    {
+      LifeRules rules = preset.getRules(null);
+      R1 = rules.getR1();
+      R2 = rules.getR2();
+      R3 = rules.getR3();
+      R4 = rules.getR4();
+      application.choiceR1.setValue(R1);
+      application.choiceR2.setValue(R2);
+      application.choiceR3.setValue(R3);
+      application.choiceR4.setValue(R4);
+    }
+  }
 
-    if(neighbors <= R3)
-      neighbors += checkSurrounding(i,j,k+1); //surrounding cells at level above
+  /**
+   * Shows a new generation. Only the cells in words that changed since the last shown generation are updated, along with
+   * the words that changed the time before, since growing and shrinking cells need one more update to finish.
+   * Every other cell is either stable or dead and would ignore the update.
+   */
+  private void updateCells(GridStore grid)
+  {
+    int padding = grid.getPadding();
+    int wordsPerRow = grid.getWordsPerRow();
 
-    if(neighbors <= R3) {
-      if (currentGrid[i][j][k + 1]) //Cell above
+    for(int j = 0; j < grid.getHeight(); j++) //For every z
+    {
+      for(int k = 0; k < grid.getDepth(); k++) //For every y
       {
-        neighbors++;
-      }
+        int row = grid.rowIndex(j, k)*wordsPerRow;
 
-      if (currentGrid[i][j][k - 1]) //Cell below
-      {
-        neighbors++;
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          long word = grid.getWord(row + w);
+          boolean changed = word != shownGrid.getWord(row + w);
+
+          if(changed || settlingWords[row + w])
+          {
+            int firstX = Math.max(w*64, padding);
+            int lastX = Math.min(w*64 + 63, padding + grid.getWidth() - 1);
+
+            for(int x = firstX; x <= lastX; x++) //For every x in the word
+            {
+              cellGroup[x - padding + 1][j + 1][k + 1].setAlive((word & (1L << x)) != 0);
+            }
+            shownGrid.setWord(row + w, word);
+          }
+          settlingWords[row + w] = changed;
+        }
       }
     }
-
-    return neighbors;
   }
 
-  private int checkSurrounding(int i, int j, int k)
+  /**
+   * Saves the generation currently shown to a snapshot file.
+   * @param path  The file to write
+   * @throws IOException If the file cannot be written
+   */
+  protected void saveSnapshot(Path path) throws IOException
   {
-    int neighbors = 0;
+    GridSnapshot snapshot = simulationRunner.getLatestSnapshot();
 
-    if(neighbors <= R3 && currentGrid[i-1][j][k])    //E neighbor
-    {
-      neighbors ++;
-    }
-    if(neighbors <= R3 && currentGrid[i-1][j-1][k])    //NE neighbor
+    if(snapshot.getGeneration() < 0)
     {
-      neighbors++;
+      throw new IllegalArgumentException("The first generation is not ready yet");
     }
-    if(neighbors <= R3 && currentGrid[i-1][j+1][k])    //SE neighbor
-    {
-      neighbors++;
-    }
-    if(neighbors <= R3 && currentGrid[i+1][j][k])    //W neighbor
-    {
-      neighbors++;
-    }
-    if(neighbors <= R3 && currentGrid[i+1][j-1][k])    //NW neighbor
-    {
-      neighbors++;
-    }
-    if(neighbors <= R3 && currentGrid[i+1][j+1][k])    //SW neighbor
-    {
-      neighbors++;
-    }
-    if(neighbors <= R3 && currentGrid[i][j-1][k])    //N neighbor
+    boolean toroidal = engine instanceof BitGridEngine && ((BitGridEngine)engine).isToroidal();
+    GridFile.write(path, snapshot.getGrid(), engine.getRules(), engine.getNeighborhood(), snapshot.getGeneration(), toroidal);
+  }
+
+  /**
+   * Saves checkpoints of the game in a directory on a background thread until the CellManager is disposed.
+   * @param directory The directory of the checkpoints
+   * @param generationInterval  Generations between checkpoints, or 0 for no limit
+   * @param secondInterval  Seconds between checkpoints, or 0 for no limit
+   * @throws IOException If the directory cannot be created
+   */
+  protected void startCheckpoints(Path directory, long generationInterval, double secondInterval) throws IOException
+  {
+    checkpointer = new Checkpointer(directory, engine, generationInterval, secondInterval,
+        gridSize.getGridBytes() > OFF_HEAP_GRID_BYTES);
+    checkpointer.start();
+    simulationRunner.setCheckpointer(checkpointer);
+  }
+
+  protected void setGameEngineState(boolean state)
+  {
+    if(state)
     {
-      neighbors++;
+      gameEngine.start();
     }
-    if(neighbors <= R3 && currentGrid[i][j+1][k])    //S neighbor
+    else
     {
-      neighbors++;
+      gameEngine.stop();
     }
+    simulationRunner.setPaused(!state);
+  }
 
-    return neighbors;
+  /**
+   * Changes the rate the game is advanced at, while it is playing or paused.
+   * @param generationsPerSecond  Generations per second, or 0 to advance the game as fast as possible
+   */
+  protected void setGenerationsPerSecond(double generationsPerSecond)
+  {
+    simulationRunner.setGenerationsPerSecond(generationsPerSecond);
   }
 
-  private void updateNextGrid()
+  /**
+   * Starts a new game with the selected preset in place of this one. The engine, the cells or the mesh, the snapshots
+   * and the checkpoint buffers are all reused, so a reset allocates no grids and no cells.
+   * This is only possible if the new game has the same grid: the same size, depth of the preset, neighborhood and
+   * rendering. Otherwise nothing is changed and a new CellManager has to be created.
+   * @param gridSize  The number of cells along each axis of the new grid
+   * @param R1  The value of Rule: 1
+   * @param R2  The value of Rule: 2
+   * @param R3  The value of Rule: 3
+   * @param R4  The value of Rule: 4
+   * @return boolean true if the game was reset
+   */
+  protected boolean reset(GridSize gridSize, int R1, int R2, int R3, int R4)
   {
-    int neighbors;
+    Preset preset = getSelectedPreset();
 
-    for(int i = 1; i<MAXWIDTH; i++) //For every x
+    if(disposed || !(engine instanceof BitGridEngine) || gridSize.getWidth() != this.gridSize.getWidth()
+        || gridSize.getHeight() != this.gridSize.getHeight() || gridSize.getDepth() != this.gridSize.getDepth()
+        || preset.getDepth(gridSize.getDepth()) + 1 != MAXDEPTH || getSelectedNeighborhood() != engine.getNeighborhood()
+        || application.renderMesh.isSelected() != (meshRenderer != null))
     {
-      for (int j = 1; j < MAXHEIGHT; j++) //For every z
-      {
-        for (int k = 1; k < MAXDEPTH; k++) //For every y
-        {
-          neighbors = countNeighbors(i,j,k);
-
-          if(currentGrid[i][j][k])  //If there is a living cell at this location
-          {
-            if(neighbors > R3 || neighbors < R4)  //See if the cell should die
-            {
-              nextGrid[i][j][k] = false;    //Update next grid to be empty at old cell location
-            }
-            else
-            {
-              nextGrid[i][j][k] = true;   //The location will remain occupied
-            }
-          }
-          else    //If there is no cell at this location
-          {
-            if(neighbors >= R1 && neighbors <= R2)  //See if a cell should be born
-            {
-              nextGrid[i][j][k] = true;   //Update next grid with new born cell
-            }
-            else
-            {
-              nextGrid[i][j][k] = false;  //This location will remain empty
-            }
-          }
-        }
-      }
+      return false;
     }
-  }
 
-  private void updateCells()
-  {
-    Cell nextCell;
+    gameEngine.stop();
+    simulationRunner.reset();
 
-    for(int i = 1; i<MAXWIDTH; i++) //For every x
+    if(checkpointer != null)
     {
-      for (int j = 1; j < MAXHEIGHT; j++) //For every z
+      checkpointer.reset();
+    }
+    generationCounter = 0;
+    densityPercentage = 0;
+    snapshotFile = null;
+    this.R1 = R1;
+    this.R2 = R2;
+    this.R3 = R3;
+    this.R4 = R4;
+
+    if(cellGroup != null)
+    {
+      for(int i = 1; i < cellGroup.length - 1; i++) //For every x
       {
-        for (int k = 1; k < MAXDEPTH; k++) //For every y
+        for(int j = 1; j < cellGroup[i].length - 1; j++) //For every z
         {
-          nextCell = cellGroup[i][j][k];
-          currentGrid[i][j][k] = nextGrid[i][j][k];   //Update currentGrid to hold the new state
-
-          if(nextGrid[i][j][k])   //If there should be a cell at this location
-          {
-            nextCell.setAlive(true);
-          }
-          else    //If there should NOT be a cell at this location
+          for(int k = 1; k < cellGroup[i][j].length - 1; k++) //For every y, including cells beyond a restricted depth
           {
-            nextCell.setAlive(false);
+            cellGroup[i][j][k].reset();
           }
         }
       }
     }
+
+    BitGridEngine bitGridEngine = (BitGridEngine)engine;
+    bitGridEngine.clear();
+    applyPresetSettings(preset);
+    bitGridEngine.setRules(new LifeRules(this.R1, this.R2, this.R3, this.R4));
+    bitGridEngine.setToroidal(application.wrapAround.isSelected());
+    seedPreset(preset);
+
+    if(meshRenderer != null)  //The shown grid is only used by the cells, so it holds the seeded grid for the mesh
+    {
+      engine.copyTo(shownGrid);
+      meshRenderer.update(shownGrid);
+    }
+    shownGrid.clear();
+    Arrays.fill(settlingWords, true);
+    simulationRunner.start();
+    setGameEngineState(true);
+    return true;
   }
 
-  protected void setGameEngineState(boolean state)
+  /**
+   * Stops the game and the simulation thread and frees the engine. The CellManager cannot be used afterwards.
+   */
+  protected void dispose()
   {
-    if(state)
+    if(disposed)
     {
-      gameEngine.start();
+      return;
     }
-    else
+    disposed = true;
+    gameEngine.stop();
+    simulationRunner.stop();
+
+    if(checkpointer != null)  //Writes the checkpoint that is still pending
     {
-      gameEngine.stop();
+      checkpointer.close();
     }
+    engine.dispose();
   }
 
   protected void updateRotationSettings(boolean x, boolean y, boolean z)
@@ -715,7 +543,7 @@ public class CellManager
   /**
    * private class MainGameLoop
    * extends AnimationTimer
-   * Called every frame while the application is running. Handles animations and timed calls to the CellManager for updating the game state.
+   * Called every frame while the application is running. Handles animations and shows the latest generation completed by the SimulationRunner.
    */
   private class MainGameLoop extends AnimationTimer
   {
@@ -727,18 +555,21 @@ public class CellManager
 
       if((frameCount%3) == 0)
       {
-        densityPercentage = 0;
-
-        for (int i = 1; i < MAXWIDTH; i++) //For every x
+        if(cellGroup != null)
         {
-          for (int j = 1; j < MAXHEIGHT; j++) //For every z
+          densityPercentage = 0;
+
+          for (int i = 1; i < MAXWIDTH; i++) //For every x
           {
-            for (int k = 1; k < MAXDEPTH; k++) //For every y
+            for (int j = 1; j < MAXHEIGHT; j++) //For every z
             {
-              cellGroup[i][j][k].tick();
-              if(cellGroup[i][j][k].isAlive())
+              for (int k = 1; k < MAXDEPTH; k++) //For every y
               {
-                densityPercentage ++;
+                cellGroup[i][j][k].tick();
+                if(cellGroup[i][j][k].isAlive())
+                {
+                  densityPercentage ++;
+                }
               }
             }
           }
@@ -746,14 +577,34 @@ public class CellManager
         updateAutoRotate();
       }
 
-      if(frameCount == 60)
+      GridSnapshot snapshot = simulationRunner.getLatestSnapshot();
+
+      if(snapshot.getGeneration() > generationCounter)  //A new generation has been completed
       {
-        generationCounter ++;
+        generationCounter = snapshot.getGeneration();
         application.updateGenerationCount(generationCounter);
-        float newDensity = ((densityPercentage/27000)*100)/1;
+
+        if(meshRenderer != null)  //The mesh has no animations, so the density is the population of the grid
+        {
+          densityPercentage = snapshot.getPopulation();
+        }
+
+        float newDensity = ((densityPercentage/(engine.getWidth()*engine.getHeight()*(float)engine.getDepth()))*100)/1;
         application.updateDensityVal((int)newDensity);
-        updateNextGrid();
-        updateCells();
+
+        if(meshRenderer != null)
+        {
+          meshRenderer.update(snapshot.getGrid());
+        }
+        else
+        {
+          updateCells(snapshot.getGrid());
+        }
+      }
+      application.updateCycleStatus(simulationRunner.getCycleDescription());   //Found after the generation is shown
+
+      if(frameCount == 60)
+      {
         frameCount = 0;
       }
     }
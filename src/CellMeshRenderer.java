@@ -0,0 +1,225 @@
+import javafx.scene.image.PixelWriter;
+import javafx.scene.image.WritableImage;
+import javafx.scene.paint.Color;
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import java.util.Arrays;
+
+/**
+ * Public class CellMeshRenderer
+ * Draws the living cells of a grid as a small number of TriangleMeshes instead of one Box per cell.
+ * The grid is split into chunks with one MeshView each, and only the chunks that changed are rebuilt for a new generation.
+ * New cells are yellow, living cells are green and cells that just died are drawn once more as small red cubes.
+ * Faces between two living cells are left out.
+ */
+public class CellMeshRenderer
+{
+  private static final int CHUNK_SIZE = 16;   //Cells along each axis in a chunk
+  private static final float CELL_SPACING = 15;
+  private static final float CELL_HALF_SIZE = 7;
+  private static final float DYING_HALF_SIZE = 3;
+  private static final int BORN = 0;
+  private static final int ALIVE = 1;
+  private static final int DYING = 2;
+  private static final int[][] FACE_CORNERS = {   //Corners of each face, wound so the face points out of the cube
+      {1, 3, 7, 5}, {0, 4, 6, 2},   //+x, -x
+      {2, 6, 7, 3}, {0, 1, 5, 4},   //+y, -y
+      {4, 5, 7, 6}, {0, 2, 3, 1}};  //+z, -z
+  private static final int[][] FACE_NEIGHBORS = {{1, 0, 0}, {-1, 0, 0}, {0, 0, 1}, {0, 0, -1}, {0, 1, 0}, {0, -1, 0}};
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int chunksI;
+  private final int chunksJ;
+  private final int chunksK;
+  private final MeshView[] chunkViews;
+  private final TriangleMesh[] chunkMeshes;
+  private final boolean[] dirtyChunks;
+  private final boolean[] dyingChunks;  //Chunks still showing cells that just died
+  private final GridStore shownGrid;
+  private float[] points = new float[8*3*64];
+  private int[] faces = new int[6*2*6*64];
+
+  /**
+   * Class Constructor
+   * @param cellGroupXform  Specifies the Xform the meshes are added to
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   */
+  public CellMeshRenderer(Xform cellGroupXform, int width, int height, int depth)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    chunksI = (width + CHUNK_SIZE - 1)/CHUNK_SIZE;
+    chunksJ = (height + CHUNK_SIZE - 1)/CHUNK_SIZE;
+    chunksK = (depth + CHUNK_SIZE - 1)/CHUNK_SIZE;
+    int chunkCount = chunksI*chunksJ*chunksK;
+    chunkViews = new MeshView[chunkCount];
+    chunkMeshes = new TriangleMesh[chunkCount];
+    dirtyChunks = new boolean[chunkCount];
+    dyingChunks = new boolean[chunkCount];
+    shownGrid = new BitGrid(width, height, depth);
+
+    WritableImage palette = new WritableImage(3, 1);  //One pixel per cell state
+    PixelWriter pixelWriter = palette.getPixelWriter();
+    pixelWriter.setColor(BORN, 0, Color.rgb(250, 250, 0));
+    pixelWriter.setColor(ALIVE, 0, Color.rgb(0, 250, 0));
+    pixelWriter.setColor(DYING, 0, Color.rgb(250, 0, 0));
+    PhongMaterial material = new PhongMaterial();
+    material.setDiffuseMap(palette);
+
+    for(int c = 0; c < chunkCount; c++)
+    {
+      chunkMeshes[c] = new TriangleMesh();
+      chunkMeshes[c].getTexCoords().addAll(0.5f/3, 0.5f, 1.5f/3, 0.5f, 2.5f/3, 0.5f);
+      chunkViews[c] = new MeshView(chunkMeshes[c]);
+      chunkViews[c].setMaterial(material);
+      cellGroupXform.getChildren().add(chunkViews[c]);
+    }
+  }
+
+  /**
+   * Shows a new generation, rebuilding only the chunks that changed since the last one.
+   * @param grid  The GridStore holding the new generation
+   */
+  public void update(GridStore grid)
+  {
+    int padding = grid.getPadding();
+    int wordsPerRow = grid.getWordsPerRow();
+
+    for(int c = 0; c < dirtyChunks.length; c++)
+    {
+      dirtyChunks[c] = dyingChunks[c];
+    }
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        int row = grid.rowIndex(j, k)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          long changed = grid.getWord(row + w) ^ shownGrid.getWord(row + w);
+
+          while(changed != 0)  //A changed cell can change the faces of the cells around it
+          {
+            int i = w*64 + Long.numberOfTrailingZeros(changed) - padding;
+            changed &= changed - 1;
+            markChunks(i, j, k);
+          }
+        }
+      }
+    }
+
+    for(int c = 0; c < dirtyChunks.length; c++)
+    {
+      if(dirtyChunks[c])
+      {
+        buildChunk(c, grid);
+      }
+    }
+    shownGrid.copyFrom(grid);
+  }
+
+  private void markChunks(int i, int j, int k)
+  {
+    for(int ci = Math.max(i - 1, 0)/CHUNK_SIZE; ci <= Math.min(i + 1, width - 1)/CHUNK_SIZE; ci++)
+    {
+      for(int cj = Math.max(j - 1, 0)/CHUNK_SIZE; cj <= Math.min(j + 1, height - 1)/CHUNK_SIZE; cj++)
+      {
+        for(int ck = Math.max(k - 1, 0)/CHUNK_SIZE; ck <= Math.min(k + 1, depth - 1)/CHUNK_SIZE; ck++)
+        {
+          dirtyChunks[(ci*chunksJ + cj)*chunksK + ck] = true;
+        }
+      }
+    }
+  }
+
+  private void buildChunk(int chunk, GridStore grid)
+  {
+    int ci = chunk/(chunksJ*chunksK);
+    int cj = (chunk/chunksK)%chunksJ;
+    int ck = chunk%chunksK;
+    int pointCount = 0;
+    int faceCount = 0;
+    boolean dying = false;
+
+    for(int i = ci*CHUNK_SIZE; i < Math.min((ci + 1)*CHUNK_SIZE, width); i++) //For every x in the chunk
+    {
+      for(int j = cj*CHUNK_SIZE; j < Math.min((cj + 1)*CHUNK_SIZE, height); j++) //For every z in the chunk
+      {
+        for(int k = ck*CHUNK_SIZE; k < Math.min((ck + 1)*CHUNK_SIZE, depth); k++) //For every y in the chunk
+        {
+          boolean alive = grid.isAlive(i, j, k);
+          boolean wasAlive = shownGrid.isAlive(i, j, k);
+
+          if(!alive && !wasAlive)
+          {
+            continue;
+          }
+
+          int state = alive ? (wasAlive ? ALIVE : BORN) : DYING;
+          float halfSize = alive ? CELL_HALF_SIZE : DYING_HALF_SIZE;
+          dying |= !alive;
+
+          if(points.length < (pointCount + 8)*3)
+          {
+            points = Arrays.copyOf(points, points.length*2);
+          }
+
+          for(int corner = 0; corner < 8; corner++)  //Corner bits are x, y, z
+          {
+            points[(pointCount + corner)*3] = (i + 1)*CELL_SPACING + ((corner & 1) == 0 ? -halfSize : halfSize);
+            points[(pointCount + corner)*3 + 1] = (k + 1)*CELL_SPACING + ((corner & 2) == 0 ? -halfSize : halfSize);
+            points[(pointCount + corner)*3 + 2] = (j + 1)*CELL_SPACING + ((corner & 4) == 0 ? -halfSize : halfSize);
+          }
+
+          for(int f = 0; f < 6; f++)
+          {
+            int[] neighbor = FACE_NEIGHBORS[f];
+
+            if(alive && isInside(i + neighbor[0], j + neighbor[1], k + neighbor[2])
+                && grid.isAlive(i + neighbor[0], j + neighbor[1], k + neighbor[2]))  //Hidden by the living cell next to it
+            {
+              continue;
+            }
+
+            if(faces.length < (faceCount + 2)*6)
+            {
+              faces = Arrays.copyOf(faces, faces.length*2);
+            }
+
+            int[] corners = FACE_CORNERS[f];
+            addTriangle(faceCount++, pointCount + corners[0], pointCount + corners[1], pointCount + corners[2], state);
+            addTriangle(faceCount++, pointCount + corners[0], pointCount + corners[2], pointCount + corners[3], state);
+          }
+          pointCount += 8;
+        }
+      }
+    }
+
+    chunkMeshes[chunk].getPoints().setAll(points, 0, pointCount*3);
+    chunkMeshes[chunk].getFaces().setAll(faces, 0, faceCount*6);
+    dyingChunks[chunk] = dying;
+  }
+
+  private boolean isInside(int i, int j, int k)
+  {
+    return i >= 0 && i < width && j >= 0 && j < height && k >= 0 && k < depth;
+  }
+
+  private void addTriangle(int face, int p0, int p1, int p2, int texCoord)
+  {
+    int index = face*6;
+    faces[index] = p0;
+    faces[index + 1] = texCoord;
+    faces[index + 2] = p1;
+    faces[index + 3] = texCoord;
+    faces[index + 4] = p2;
+    faces[index + 5] = texCoord;
+  }
+}
@@ -0,0 +1,356 @@
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Public class Checkpointer
+ * Saves a running engine to GridFile checkpoints in a directory every N generations or T seconds, so a long run can be
+ * resumed from the latest valid checkpoint after a crash or a restart.
+ * The step loop only copies the grid into one of two buffers, and a writer thread saves it while the loop carries on
+ * with the other buffer. If both buffers are still waiting to be written the checkpoint is skipped rather than
+ * blocking the step loop.
+ * The KEPT_CHECKPOINTS checkpoints written last are kept, so a damaged newest checkpoint still leaves one to resume
+ * from. A new run in the same directory supersedes the checkpoints of an earlier run.
+ */
+public class Checkpointer implements Runnable
+{
+  private static final int KEPT_CHECKPOINTS = 2;
+  private static final Pattern FILE_NAME = Pattern.compile("checkpoint-(\\d+)\\.grid");
+  private static final Checkpoint STOP = new Checkpoint(null);  //Tells the writer thread to finish
+  private final Path directory;
+  private final long generationInterval;
+  private final long nanoInterval;
+  private final BlockingQueue<Checkpoint> freeBuffers = new ArrayBlockingQueue<>(2);
+  private final BlockingQueue<Checkpoint> pendingBuffers = new ArrayBlockingQueue<>(3);
+  private long nextGeneration = -1;  //Set by the first step, so the engine is only read by the thread stepping it
+  private long nextTime;
+  private volatile long skipped;
+  private volatile long lastSavedGeneration = -1;
+  private volatile Thread thread;
+
+  /**
+   * Class Constructor
+   * @param directory Specifies the directory of the checkpoints, which is created if it does not exist
+   * @param engine  Specifies the engine to save. Only its dimensions are read here, so it may already be running.
+   * @param generationInterval  Specifies the number of generations between checkpoints, or 0 for no limit
+   * @param secondInterval  Specifies the number of seconds between checkpoints, or 0 for no limit
+   * @param offHeap True to copy the grid into buffers outside of the heap, for very large grids
+   * @throws IOException If the directory cannot be created
+   */
+  public Checkpointer(Path directory, LifeEngine engine, long generationInterval, double secondInterval, boolean offHeap)
+      throws IOException
+  {
+    if(generationInterval <= 0 && secondInterval <= 0)
+    {
+      throw new IllegalArgumentException("Checkpoints need an interval in generations or seconds");
+    }
+    this.directory = directory;
+    this.generationInterval = generationInterval;
+    nanoInterval = (long)(secondInterval*1e9);
+    Files.createDirectories(directory);
+
+    for(int b = 0; b < 2; b++)
+    {
+      GridStore grid = offHeap ? new OffHeapGrid(engine.getWidth(), engine.getHeight(), engine.getDepth())
+          : new BitGrid(engine.getWidth(), engine.getHeight(), engine.getDepth());
+      freeBuffers.add(new Checkpoint(new GridSnapshot(grid)));
+    }
+    nextTime = System.nanoTime() + nanoInterval;
+  }
+
+  /**
+   * Starts the writer thread.
+   */
+  public synchronized void start()
+  {
+    if(thread == null)
+    {
+      thread = new Thread(this, "Checkpoint writer");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Saves a checkpoint if one is due. Called by the thread stepping the engine after every generation.
+   * @param engine  The engine to save
+   */
+  public void afterStep(LifeEngine engine)
+  {
+    if(nextGeneration < 0)
+    {
+      nextGeneration = engine.getGeneration() + generationInterval;
+    }
+
+    boolean due = generationInterval > 0 && engine.getGeneration() >= nextGeneration
+        || nanoInterval > 0 && System.nanoTime() - nextTime >= 0;
+
+    if(!due)
+    {
+      return;
+    }
+
+    Checkpoint checkpoint = freeBuffers.poll();
+
+    if(checkpoint == null)  //The writer is behind, so try again after the next generation
+    {
+      skipped++;
+      return;
+    }
+    capture(checkpoint, engine);
+  }
+
+  /**
+   * Starts both intervals over, after the engine was cleared and seeded with a new game. Called while the engine is not
+   * being stepped.
+   */
+  public void reset()
+  {
+    nextGeneration = -1;
+    nextTime = System.nanoTime() + nanoInterval;
+  }
+
+  /**
+   * Saves a checkpoint now, waiting for a buffer if the writer is behind. Called by the thread stepping the engine.
+   * @param engine  The engine to save
+   * @throws IllegalStateException If the writer thread stopped, so no buffer will ever be free again
+   */
+  public void checkpoint(LifeEngine engine)
+  {
+    try
+    {
+      while(true)
+      {
+        Checkpoint checkpoint = freeBuffers.poll(1, TimeUnit.SECONDS);
+
+        if(checkpoint != null)
+        {
+          capture(checkpoint, engine);
+          return;
+        }
+
+        Thread writer = thread;
+
+        if(writer == null || !writer.isAlive())
+        {
+          throw new IllegalStateException("The checkpoint writer stopped, so the checkpoint cannot be saved");
+        }
+      }
+    }
+    catch(InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void capture(Checkpoint checkpoint, LifeEngine engine)
+  {
+    checkpoint.snapshot.capture(engine);
+    checkpoint.rules = engine.getRules();
+    checkpoint.neighborhood = engine.getNeighborhood();
+    checkpoint.toroidal = engine instanceof BitGridEngine && ((BitGridEngine)engine).isToroidal();
+    pendingBuffers.add(checkpoint);
+    nextGeneration = engine.getGeneration() + generationInterval;
+    nextTime = System.nanoTime() + nanoInterval;
+  }
+
+  /**
+   * Writes the checkpoints that are still pending, stops the writer thread and frees the buffers.
+   */
+  public synchronized void close()
+  {
+    if(thread != null)
+    {
+      pendingBuffers.add(STOP);
+
+      try
+      {
+        thread.join();
+      }
+      catch(InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+
+    for(Checkpoint checkpoint : freeBuffers)
+    {
+      checkpoint.snapshot.getGrid().dispose();
+    }
+  }
+
+  public void run()
+  {
+    while(true)
+    {
+      Checkpoint checkpoint;
+
+      try
+      {
+        checkpoint = pendingBuffers.take();
+      }
+      catch(InterruptedException e)
+      {
+        return;
+      }
+
+      if(checkpoint == STOP)
+      {
+        return;
+      }
+
+      GridSnapshot snapshot = checkpoint.snapshot;
+      Path path = directory.resolve("checkpoint-" + snapshot.getGeneration() + ".grid");
+
+      try
+      {
+        GridFile.write(path, snapshot.getGrid(), checkpoint.rules, checkpoint.neighborhood, snapshot.getGeneration(),
+            checkpoint.toroidal);
+        lastSavedGeneration = snapshot.getGeneration();
+        deleteOldCheckpoints();
+      }
+      catch(IOException e)  //The run goes on, and the next checkpoint tries again
+      {
+        System.err.println("Could not save checkpoint " + path + ": " + e.getMessage());
+      }
+      finally
+      {
+        freeBuffers.add(checkpoint);
+      }
+    }
+  }
+
+  private void deleteOldCheckpoints() throws IOException
+  {
+    List<Path> checkpoints = listCheckpoints(directory);
+
+    for(int c = KEPT_CHECKPOINTS; c < checkpoints.size(); c++)
+    {
+      Files.deleteIfExists(checkpoints.get(c));
+    }
+  }
+
+  /**
+   * Returns the checkpoints in a directory, the last written first. Checkpoints written at the same time are ordered
+   * by generation.
+   */
+  private static List<Path> listCheckpoints(Path directory) throws IOException
+  {
+    List<Path> checkpoints = new ArrayList<>();
+
+    if(!Files.isDirectory(directory))
+    {
+      return checkpoints;
+    }
+
+    try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "checkpoint-*.grid"))
+    {
+      for(Path file : files)
+      {
+        if(FILE_NAME.matcher(file.getFileName().toString()).matches())
+        {
+          checkpoints.add(file);
+        }
+      }
+    }
+
+    Comparator<Path> byTime = Comparator.comparing(Checkpointer::getWriteTime);
+    checkpoints.sort(byTime.thenComparing(Checkpointer::getGeneration).reversed());
+    return checkpoints;
+  }
+
+  private static FileTime getWriteTime(Path file)
+  {
+    try
+    {
+      return Files.getLastModifiedTime(file);
+    }
+    catch(IOException e)  //Deleted since it was listed, so it sorts last
+    {
+      return FileTime.fromMillis(0);
+    }
+  }
+
+  private static long getGeneration(Path file)
+  {
+    Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+    return matcher.matches() ? Long.parseLong(matcher.group(1)) : -1;
+  }
+
+  /**
+   * Finds the newest checkpoint in a directory whose header and grid both match their checksums.
+   * @param directory The directory of the checkpoints
+   * @return GridFile checkpoint, or null if the directory holds no checkpoints
+   * @throws IOException If the directory cannot be read, or it holds checkpoints but every one of them is damaged
+   */
+  public static GridFile findLatest(Path directory) throws IOException
+  {
+    List<Path> checkpoints = listCheckpoints(directory);
+
+    for(Path path : checkpoints)
+    {
+      try
+      {
+        GridFile checkpoint = GridFile.read(path);
+        checkpoint.verify();
+        return checkpoint;
+      }
+      catch(IOException | IllegalArgumentException e)  //Damaged, so try the one before
+      {
+        System.err.println("Skipping checkpoint " + path + ": " + e.getMessage());
+      }
+    }
+
+    if(!checkpoints.isEmpty())  //Starting over would delete them, so they are left for the user to look at
+    {
+      throw new IOException("None of the " + checkpoints.size() + " checkpoints in " + directory + " can be resumed from");
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of checkpoints that were skipped because the writer was behind.
+   * @return long skipped checkpoints
+   */
+  public long getSkipped()
+  {
+    return skipped;
+  }
+
+  /**
+   * Returns the generation of the last checkpoint written, or -1 if none has been written yet.
+   * @return long generation
+   */
+  public long getLastSavedGeneration()
+  {
+    return lastSavedGeneration;
+  }
+
+  /**
+   * private class Checkpoint
+   * A buffer holding a generation waiting to be written, with the settings saved along with it.
+   */
+  private static class Checkpoint
+  {
+    private final GridSnapshot snapshot;
+    private LifeRules rules;
+    private Neighborhood neighborhood;
+    private boolean toroidal;
+
+    private Checkpoint(GridSnapshot snapshot)
+    {
+      this.snapshot = snapshot;
+    }
+  }
+}
@@ -0,0 +1,218 @@
+import java.util.Arrays;
+
+/**
+ * Public class CycleDetector
+ * Detects a grid that has settled into a still life or an oscillator by remembering the hashes of the last generations.
+ * A generation whose hash and population match a remembered generation repeats it, so from then on the grid cycles
+ * with a period of the generations in between. Only periods up to the size of the history are found.
+ * The ring of remembered generations is indexed by hash in an open addressing table, so a generation is looked up in
+ * constant time however long the history is.
+ * The bit engine keeps its hash up to date as it steps. Other engines are copied into a grid and hashed from scratch,
+ * which costs a pass over the grid every generation.
+ */
+public class CycleDetector
+{
+  public static final int DEFAULT_HISTORY = 1024;
+  private final long[] hashes;  //Ring of the hashes of the last generations
+  private final long[] populations;
+  private final long[] generations;
+  private final int[] index;  //Slots of the ring plus 1 by hash, with linear probing. 0 marks an unused entry.
+  private final int indexMask;
+  private int next;   //Slot of the ring written next
+  private int size;
+  private long period;
+  private long cycleStart = -1;
+  private GridStore hashGrid;   //Copy of engines that do not keep a hash
+
+  /**
+   * Class Constructor
+   * @param historySize Specifies the number of generations remembered, which is the longest period found
+   */
+  public CycleDetector(int historySize)
+  {
+    if(historySize < 1)
+    {
+      throw new IllegalArgumentException("The history must hold at least 1 generation");
+    }
+    hashes = new long[historySize];
+    populations = new long[historySize];
+    generations = new long[historySize];
+    index = new int[Integer.highestOneBit(historySize)*4];  //At most half full
+    indexMask = index.length - 1;
+  }
+
+  /**
+   * Adds the current generation of an engine to the history. Called after every generation, from the thread stepping
+   * the engine.
+   * @param engine  The engine, which must be bounded, since cells outside of the grid are not hashed
+   * @return boolean true if this generation found the cycle
+   */
+  public boolean update(LifeEngine engine)
+  {
+    long hash;
+
+    if(engine instanceof BitGridEngine)
+    {
+      hash = ((BitGridEngine)engine).getHash();
+    }
+    else
+    {
+      if(hashGrid == null)
+      {
+        hashGrid = new BitGrid(engine.getWidth(), engine.getHeight(), engine.getDepth());
+      }
+      engine.copyTo(hashGrid);
+      hash = hashGrid.hashWords();
+    }
+    return update(engine.getGeneration(), hash, engine.getPopulation());
+  }
+
+  /**
+   * Adds a generation to the history.
+   * @param generation  The generation
+   * @param hash  The hash of its grid
+   * @param population  The number of living cells
+   * @return boolean true if this generation found the cycle
+   */
+  public boolean update(long generation, long hash, long population)
+  {
+    if(isCycleFound())
+    {
+      return false;
+    }
+
+    for(int entry = home(hash); index[entry] != 0; entry = (entry + 1) & indexMask)
+    {
+      int slot = index[entry] - 1;
+
+      if(hashes[slot] == hash && populations[slot] == population && generations[slot] < generation)
+      {
+        period = generation - generations[slot];
+        cycleStart = generations[slot];
+        return true;
+      }
+    }
+
+    if(size == hashes.length)   //The oldest generation is forgotten
+    {
+      removeFromIndex(next);
+    }
+    hashes[next] = hash;
+    populations[next] = population;
+    generations[next] = generation;
+    addToIndex(next);
+    next = (next + 1)%hashes.length;
+    size = Math.min(size + 1, hashes.length);
+    return false;
+  }
+
+  private int home(long hash)
+  {
+    return (int)(hash ^ (hash >>> 32)) & indexMask;
+  }
+
+  private void addToIndex(int slot)
+  {
+    int entry = home(hashes[slot]);
+
+    while(index[entry] != 0)
+    {
+      entry = (entry + 1) & indexMask;
+    }
+    index[entry] = slot + 1;
+  }
+
+  private void removeFromIndex(int slot)
+  {
+    int entry = home(hashes[slot]);
+
+    while(index[entry] != slot + 1)
+    {
+      entry = (entry + 1) & indexMask;
+    }
+
+    int gap = entry;
+    entry = (entry + 1) & indexMask;
+
+    while(index[entry] != 0)
+    {
+      int home = home(hashes[index[entry] - 1]);
+
+      if(((entry - home) & indexMask) >= ((entry - gap) & indexMask))   //The slot can move back into the gap
+      {
+        index[gap] = index[entry];
+        gap = entry;
+      }
+      entry = (entry + 1) & indexMask;
+    }
+    index[gap] = 0;
+  }
+
+  /**
+   * Forgets every generation and the cycle, e.g. after the grid was edited or the rules changed.
+   */
+  public void reset()
+  {
+    Arrays.fill(hashes, 0);
+    Arrays.fill(index, 0);
+    next = 0;
+    size = 0;
+    period = 0;
+    cycleStart = -1;
+  }
+
+  public boolean isCycleFound()
+  {
+    return cycleStart >= 0;
+  }
+
+  /**
+   * Returns a boolean value indicating if the grid stopped changing, which includes a grid where every cell died.
+   * @return boolean stable
+   */
+  public boolean isStable()
+  {
+    return period == 1;
+  }
+
+  /**
+   * Returns the period of the cycle, 1 for a still life, or 0 if no cycle was found yet.
+   * @return long period
+   */
+  public long getPeriod()
+  {
+    return period;
+  }
+
+  /**
+   * Returns the first generation of the cycle, or -1 if no cycle was found yet.
+   * @return long generation
+   */
+  public long getCycleStart()
+  {
+    return cycleStart;
+  }
+
+  /**
+   * Returns the generation that has the same grid as a later generation.
+   * @param generation  Any generation from the start of the cycle on
+   * @return long generation within the first period of the cycle
+   */
+  public long getEquivalentGeneration(long generation)
+  {
+    return cycleStart + (generation - cycleStart)%period;
+  }
+
+  /**
+   * Returns a description of the cycle, like "stable at gen 40" or "period 2 from gen 37".
+   * @return String description, or null if no cycle was found yet
+   */
+  public String describe()
+  {
+    if(!isCycleFound())
+    {
+      return null;
+    }
+    return isStable() ? "stable at gen " + cycleStart : "period " + period + " from gen " + cycleStart;
+  }
+}
@@ -0,0 +1,394 @@
+import java.util.Arrays;
+
+/**
+ * Public class DenseEngine
+ * A LifeEngine for dense grids that counts neighbors with separable box sums instead of probing every neighbor of every
+ * cell. Each plane along the z axis is summed along x and then along y, and the sum of a cell's neighborhood is the
+ * sum of the plane sums above, at and below it. A plane sum is computed once and reused by every plane it reaches, in
+ * a ring of plane sums, so a generation costs a few additions per cell whatever the number of living cells.
+ * Cells and sums are one byte per cell, packed eight to a long in rows along the x axis indexed z then y like a
+ * GridStore, so every addition sums eight cells at once. No sum is larger than 125, so a byte never carries into the
+ * next one.
+ * The grid is advanced in bands of rows along the y axis, sweeping every plane along z for one band before the next.
+ * The sums only cover the rows of a band, so the ring of plane sums stays in the cache however large a plane is, at
+ * the cost of summing the rows within the radius of a band along x again for the band next to it.
+ */
+public class DenseEngine implements LifeEngine
+{
+  private static final int CELLS = 0;   //A plane sum that is just the cells of the plane
+  private static final int CROSS = 1;   //A cell and the 4 cells next to it along x and y
+  private static final int BOX = 2;   //The square of cells within the radius along x and y
+  private static final int BAND_BYTES = 128 << 10;  //Sums held for a band of rows, small enough for the L2 cache
+  private static final int MIN_BAND_ROWS = 8;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int padding;  //Dead cells around the grid, in cells along x and in rows and planes along y and z
+  private final int wordsPerRow;
+  private final int rowsPerPlane;
+  private final int planeWords;
+  private final long[] rowMask;  //Bytes of each word of a row that hold cells of the grid rather than the border
+  private final int bandRows;   //Rows along y advanced together
+  private final Neighborhood neighborhood;
+  private final int centerSum;  //Kind of plane sum taken in the plane of the cell
+  private final int outerSum;   //Kind of plane sum taken in the planes above and below the cell
+  private long[] cells;   //1 in the byte of a living cell
+  private long[] nextCells;
+  private final long[] rowSums;   //Sums along x of the rows of a band and the rows within the radius, for the sum along y
+  private final long[][] planeSums;   //Ring of outer plane sums of a band, one for every plane within the radius
+  private final long[] centerPlaneSum;
+  private final long[] totals;  //Sums of the neighborhood and the cell itself for a row
+  private LifeRules rules;
+  private byte[] ruleTable;
+  private long population;
+  private long generation;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   */
+  public DenseEngine(int width, int height, int depth, LifeRules rules)
+  {
+    this(width, height, depth, rules, Neighborhood.MOORE);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors
+   */
+  public DenseEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.neighborhood = neighborhood;
+    padding = neighborhood.getRadius();
+    wordsPerRow = (width + 2*padding + 7)/8;
+    rowsPerPlane = depth + 2*padding;
+    planeWords = wordsPerRow*rowsPerPlane;
+    long wordCount = (long)planeWords*(height + 2*padding);
+
+    if(wordCount > Integer.MAX_VALUE - 8)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid does not fit in a single array");
+    }
+
+    rowMask = new long[wordsPerRow];
+
+    for(int i = 0; i < width; i++)
+    {
+      rowMask[(i + padding)/8] |= 0xffL << shift(i, padding);
+    }
+
+    switch(neighborhood)  //Every neighborhood is a stack of plane sums
+    {
+      case VON_NEUMANN:
+        centerSum = CROSS;
+        outerSum = CELLS;
+        break;
+      case EDGES:
+        centerSum = BOX;
+        outerSum = CROSS;
+        break;
+      default:
+        centerSum = BOX;
+        outerSum = BOX;
+        break;
+    }
+
+    int rowBytes = 8*wordsPerRow*(2*padding + 3);   //Ring, center plane sum and row sums
+    bandRows = Math.min(depth, Math.max(MIN_BAND_ROWS, BAND_BYTES/rowBytes));
+    int bandWords = bandRows*wordsPerRow;
+    cells = new long[(int)wordCount];
+    nextCells = new long[cells.length];
+    rowSums = new long[bandWords + 2*padding*wordsPerRow];
+    planeSums = new long[2*padding + 1][bandWords];
+    centerPlaneSum = centerSum == outerSum ? null : new long[bandWords];
+    totals = new long[wordsPerRow];
+    setRules(rules);
+  }
+
+  private int wordIndex(int i, int j, int k)
+  {
+    return ((j + padding)*rowsPerPlane + k + padding)*wordsPerRow + (i + padding)/8;
+  }
+
+  private static int shift(int i, int padding)
+  {
+    return 8*((i + padding)%8);
+  }
+
+  /**
+   * Changes the rules used to advance the grid.
+   * @param rules Specifies the new rules
+   */
+  public void setRules(LifeRules rules)
+  {
+    this.rules = rules;
+    ruleTable = rules.toLookupTable();
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    return (cells[wordIndex(i, j, k)] >>> shift(i, padding) & 1) != 0;
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    if(isAlive(i, j, k) != state)
+    {
+      cells[wordIndex(i, j, k)] ^= 1L << shift(i, padding);
+      population += state ? 1 : -1;
+    }
+  }
+
+  public void clear()
+  {
+    Arrays.fill(cells, 0);
+    population = 0;
+    generation = 0;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return population;
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.clear();
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        int row = wordIndex(0, j, k) - padding/8;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          long word = cells[row + w];
+
+          while(word != 0)
+          {
+            int i = w*8 + Long.numberOfTrailingZeros(word)/8 - padding;
+            word &= word - 1;
+            target.setAlive(i, j, k, true);
+          }
+        }
+      }
+    }
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    clear();
+    source.forEachLiveCell((i, j, k) -> setAlive(i, j, k, true));
+    this.generation = generation;
+  }
+
+  public void step()
+  {
+    long nextPopulation = 0;
+
+    for(int firstK = 0; firstK < depth; firstK += bandRows) //For every band of rows along y
+    {
+      nextPopulation += stepBand(firstK, Math.min(firstK + bandRows, depth));
+    }
+
+    long[] swap = cells;
+    cells = nextCells;
+    nextCells = swap;
+    population = nextPopulation;
+    generation++;
+  }
+
+  /**
+   * Writes the next generation of the rows from firstK to lastK in every plane and returns its population.
+   */
+  private long stepBand(int firstK, int lastK)
+  {
+    int ringSize = planeSums.length;
+    long bandPopulation = 0;
+
+    for(int j = -padding; j < padding; j++)  //The planes below the first plane
+    {
+      sumPlane(outerSum, j, firstK, lastK, planeSums[j + padding]);
+    }
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      sumPlane(outerSum, j + padding, firstK, lastK, planeSums[(j + 2*padding)%ringSize]);
+      long[] center = planeSums[(j + padding)%ringSize];
+
+      if(centerPlaneSum != null)
+      {
+        sumPlane(centerSum, j, firstK, lastK, centerPlaneSum);
+        center = centerPlaneSum;
+      }
+
+      for(int k = firstK; k < lastK; k++) //For every y in the band
+      {
+        int bandRow = (k - firstK)*wordsPerRow;
+        System.arraycopy(center, bandRow, totals, 0, wordsPerRow);
+
+        for(int d = 1; d <= padding; d++)  //Adds the planes above and below
+        {
+          long[] below = planeSums[(j + padding - d)%ringSize];
+          long[] above = planeSums[(j + padding + d)%ringSize];
+
+          for(int w = 0; w < wordsPerRow; w++)
+          {
+            totals[w] += below[bandRow + w] + above[bandRow + w];
+          }
+        }
+
+        int row = (j + padding)*planeWords + (k + padding)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          long next = nextWord(cells[row + w], totals[w]) & rowMask[w];
+          nextCells[row + w] = next;
+          bandPopulation += Long.bitCount(next);
+        }
+      }
+    }
+    return bandPopulation;
+  }
+
+  /**
+   * Looks up the next state of the eight cells in a word.
+   * @param word  The cells
+   * @param total The sums of the neighborhood and the cell itself
+   * @return long the cells in the next generation
+   */
+  private long nextWord(long word, long total)
+  {
+    long next = 0;
+
+    for(int shift = 0; shift < 64; shift += 8)
+    {
+      int cell = (int)(word >>> shift) & 1;   //The totals count the cell itself
+      long state = ruleTable[cell*(LifeRules.TABLE_STRIDE - 1) + ((int)(total >>> shift) & 0xff)];
+      next |= state << shift;
+    }
+    return next;
+  }
+
+  /**
+   * Sums the cells of a band of a plane along x and y. The sums of row k are written at (k - firstK)*wordsPerRow.
+   * @param kind  CELLS, CROSS or BOX
+   * @param j The plane, which is all dead if it is in the border
+   * @param firstK  The first row of the band
+   * @param lastK The row after the band
+   * @param sums  Receives the sums
+   */
+  private void sumPlane(int kind, int j, int firstK, int lastK, long[] sums)
+  {
+    int bandWords = (lastK - firstK)*wordsPerRow;
+
+    if(j < 0 || j >= height)
+    {
+      Arrays.fill(sums, 0, bandWords, 0);
+      return;
+    }
+
+    int band = (j + padding)*planeWords + (firstK + padding)*wordsPerRow;   //First word of the band in the plane
+
+    if(kind == CELLS)
+    {
+      System.arraycopy(cells, band, sums, 0, bandWords);
+      return;
+    }
+
+    int reach = kind == CROSS ? 1 : padding;
+    int rowReach = kind == CROSS ? 0 : padding;   //Rows around the band summed along x, the cross adds cells instead
+    int rowSumStart = padding*wordsPerRow;  //Where the row sums of the band start, after the rows within the radius
+
+    for(int r = -rowReach; r < lastK - firstK + rowReach; r++) //Sums along x, shifting in the bytes of the words next to each word
+    {
+      int row = band + r*wordsPerRow;
+      int sumRow = rowSumStart + r*wordsPerRow;
+      long previous = 0;
+      long word = cells[row];
+
+      for(int w = 0; w < wordsPerRow; w++)
+      {
+        long next = w + 1 < wordsPerRow ? cells[row + w + 1] : 0;
+        long sum = word + (word << 8 | previous >>> 56) + (word >>> 8 | next << 56);
+
+        if(reach == 2)
+        {
+          sum += (word << 16 | previous >>> 48) + (word >>> 16 | next << 48);
+        }
+        rowSums[sumRow + w] = sum;
+        previous = word;
+        word = next;
+      }
+    }
+
+    for(int r = 0; r < lastK - firstK; r++) //Sums along y
+    {
+      int sumRow = rowSumStart + r*wordsPerRow;
+      int bandRow = r*wordsPerRow;
+
+      if(kind == CROSS)  //The row sum plus the cells on the rows next to it
+      {
+        int row = band + bandRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          sums[bandRow + w] = rowSums[sumRow + w] + cells[row + w - wordsPerRow] + cells[row + w + wordsPerRow];
+        }
+        continue;
+      }
+
+      for(int w = 0; w < wordsPerRow; w++)
+      {
+        long sum = rowSums[sumRow + w];
+
+        for(int d = 1; d <= padding; d++)
+        {
+          sum += rowSums[sumRow + w - d*wordsPerRow] + rowSums[sumRow + w + d*wordsPerRow];
+        }
+        sums[bandRow + w] = sum;
+      }
+    }
+  }
+}
@@ -0,0 +1,123 @@
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Public enum EngineType
+ * The LifeEngine implementations that can run a simulation, with a factory for each.
+ */
+public enum EngineType
+{
+  BIT("bit"),
+  INCREMENTAL("incremental"),
+  DENSE("dense"),
+  VECTOR("vector"),
+  SPARSE("sparse"),
+  OCTREE("octree");
+
+  private final String name;
+
+  EngineType(String name)
+  {
+    this.name = name;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the engine type with a command line name, e.g. bit.
+   * @param name  The name of the engine type
+   * @return EngineType engine type
+   */
+  public static EngineType fromName(String name)
+  {
+    for(EngineType type : values())
+    {
+      if(type.name.equalsIgnoreCase(name))
+      {
+        return type;
+      }
+    }
+    throw new IllegalArgumentException("Unknown engine: " + name);
+  }
+
+  /**
+   * Creates an empty engine.
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors. The octree engine only supports a radius of 1.
+   * @param threads Number of threads used to advance the grid. Only the bit engine runs on more than one thread.
+   * The vector engine is a DenseEngine if isVectorAvailable() is false.
+   * @return LifeEngine engine
+   */
+  public LifeEngine create(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood, int threads)
+  {
+    switch(this)
+    {
+      case INCREMENTAL:
+        return new IncrementalEngine(width, height, depth, rules, neighborhood);
+      case DENSE:
+        return new DenseEngine(width, height, depth, rules, neighborhood);
+      case VECTOR:
+        if(isVectorAvailable())
+        {
+          return createVectorEngine(width, height, depth, rules, neighborhood);
+        }
+        return new DenseEngine(width, height, depth, rules, neighborhood);
+      case SPARSE:
+        return new SparseEngine(width, height, depth, rules, neighborhood);
+      case OCTREE:
+        return new OctreeEngine(width, height, depth, rules, neighborhood, Runtime.getRuntime().maxMemory()/2);
+      default:
+        BitGridEngine engine = new BitGridEngine(width, height, depth, rules, neighborhood);
+        engine.setParallelism(threads);
+        return engine;
+    }
+  }
+
+  /**
+   * Returns a boolean value indicating if the vector engine can run. VectorEngine is built separately from the simd
+   * directory, and needs the jdk.incubator.vector module (--add-modules jdk.incubator.vector) and vectors of at least
+   * 16 bytes.
+   * @return boolean available
+   */
+  public static boolean isVectorAvailable()
+  {
+    try
+    {
+      return (Boolean)Class.forName("VectorEngine").getMethod("isSupported").invoke(null);
+    }
+    catch(ReflectiveOperationException | LinkageError e)
+    {
+      return false;
+    }
+  }
+
+  /**
+   * Creates a VectorEngine, which is created by name because it is not built with the rest of the engines.
+   */
+  private static LifeEngine createVectorEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    try
+    {
+      return (LifeEngine)Class.forName("VectorEngine")
+          .getConstructor(int.class, int.class, int.class, LifeRules.class, Neighborhood.class)
+          .newInstance(width, height, depth, rules, neighborhood);
+    }
+    catch(InvocationTargetException e)
+    {
+      if(e.getCause() instanceof RuntimeException)  //An IllegalArgumentException for a grid that is too large
+      {
+        throw (RuntimeException)e.getCause();
+      }
+      throw new IllegalStateException("Could not create the vector engine", e.getCause());
+    }
+    catch(ReflectiveOperationException e)
+    {
+      throw new IllegalStateException("Could not create the vector engine", e);
+    }
+  }
+}
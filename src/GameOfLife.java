@@ -13,7 +13,12 @@ import javafx.scene.input.KeyEvent;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.paint.Color;
+import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Public class GameOfLife
@@ -45,6 +50,7 @@ public class GameOfLife extends Application
     private final Xform sceneXform = new Xform();
     private final Xform cellGroupXform = new Xform();
     private CellManager cellManager;
+    private GridSize gridSize = GridSize.DEFAULT;
     private final PerspectiveCamera camera = new PerspectiveCamera(true);
     private final Xform cameraXform = new Xform();
     private final Xform cameraXform2 = new Xform();
@@ -55,6 +61,14 @@ public class GameOfLife extends Application
     private double mouseOldY;
     private double mouseDeltaX;
     private double mouseDeltaY;
+    private Stage stage;
+    private Path checkpointDirectory;   //Null unless checkpoints are saved
+    private long checkpointGenerations;
+    private double checkpointSeconds;
+    private double generationsPerSecond = 1;    //0 advances the game as fast as possible
+    private Menu menuFile;
+    private MenuItem saveSnapshot;
+    private MenuItem loadSnapshot;
     private Menu menuPresets;
     protected RadioMenuItem random;
     protected RadioMenuItem preset2D;
@@ -62,6 +76,17 @@ public class GameOfLife extends Application
     protected RadioMenuItem mazeCube;
     protected RadioMenuItem twoToad;
     protected RadioMenuItem pentaDecathlon;
+    private Menu menuRendering;
+    protected RadioMenuItem renderCells;
+    protected RadioMenuItem renderMesh;
+    private Menu menuBoundary;
+    protected RadioMenuItem deadBorder;
+    protected RadioMenuItem wrapAround;
+    private Menu menuNeighborhood;
+    protected RadioMenuItem vonNeumann;
+    protected RadioMenuItem edges;
+    protected RadioMenuItem moore;
+    protected RadioMenuItem radius2;
     private CheckMenuItem xRotation;
     private CheckMenuItem yRotation;
     private CheckMenuItem zRotation;
@@ -73,6 +98,7 @@ public class GameOfLife extends Application
     protected ChoiceBox choiceR4;
     protected Label generationVal;
     protected Label densityVal;
+    private Label cycleVal;
     private boolean isPlaying = true;
 
     private void buildCamera()
@@ -84,10 +110,18 @@ public class GameOfLife extends Application
         cameraXform3.setRotateZ(180.0);
 
         camera.setNearClip(CAMERA_NEAR_CLIP);
-        camera.setFarClip(CAMERA_FAR_CLIP);
-        camera.setTranslateZ(CAMERA_INITIAL_DISTANCE);
-        cameraXform.t.setX(CAMERA_INITIAL_X_POS);
-        cameraXform.t.setY(CAMERA_INITIAL_Y_POS);
+        fitCameraToGrid();
+    }
+
+    /**
+     * Moves the camera back to where it shows the whole grid.
+     */
+    private void fitCameraToGrid()
+    {
+        camera.setFarClip(Math.max(CAMERA_FAR_CLIP, -3*getCameraDistance()));
+        camera.setTranslateZ(getCameraDistance());
+        cameraXform.t.setX(CAMERA_INITIAL_X_POS*(gridSize.getWidth() + 1)/31);
+        cameraXform.t.setY(CAMERA_INITIAL_Y_POS*(gridSize.getDepth() + 1)/31);
         cameraXform.ry.setAngle(CAMERA_INITIAL_Y_ANGLE);
         cameraXform.rx.setAngle(CAMERA_INITIAL_X_ANGLE);
     }
@@ -100,7 +134,7 @@ public class GameOfLife extends Application
                     case Z:
                         cameraXform2.t.setX(0.0);
                         cameraXform2.t.setY(0.0);
-                        camera.setTranslateZ(CAMERA_INITIAL_DISTANCE);
+                        camera.setTranslateZ(getCameraDistance());
                         cameraXform.ry.setAngle(CAMERA_INITIAL_Y_ANGLE);
                         cameraXform.rx.setAngle(CAMERA_INITIAL_X_ANGLE);
                         break;
@@ -166,6 +200,8 @@ public class GameOfLife extends Application
         generationVal = new Label(String.valueOf(0));
         Label densityLabel = new Label("  Density: ");
         densityVal = new Label(String.valueOf(0) + "%");
+        Label cycleLabel = new Label("  Cycle: ");
+        cycleVal = new Label("none");
 
         choiceR1 = createChoiceBox();
         choiceR2 = createChoiceBox();
@@ -184,7 +220,7 @@ public class GameOfLife extends Application
 
 
         ToolBar toolbar = new ToolBar(playButton,resetButton,labelR1, choiceR1, labelR2, choiceR2, labelR3, choiceR3, labelR4, choiceR4,
-                generationLabel, generationVal, densityLabel, densityVal);
+                generationLabel, generationVal, densityLabel, densityVal, cycleLabel, cycleVal);
         toolbar.setOrientation(Orientation.HORIZONTAL);
         return toolbar;
     }
@@ -193,6 +229,15 @@ public class GameOfLife extends Application
     {
         MenuBar menuBar = new MenuBar();
 
+        menuFile = new Menu("File");
+        saveSnapshot = new MenuItem("Save Snapshot...");
+        saveSnapshot.setOnAction(e -> saveSnapshot());
+        loadSnapshot = new MenuItem("Load Snapshot...");
+        loadSnapshot.setOnAction(e -> loadSnapshot());
+        menuFile.getItems().add(saveSnapshot);
+        menuFile.getItems().add(loadSnapshot);
+        menuFile.setDisable(true);
+
         menuPresets = new Menu("Presets");
         ToggleGroup presetToggleGroup = new ToggleGroup();
         random = createRadioItem("Random", presetToggleGroup);
@@ -211,6 +256,43 @@ public class GameOfLife extends Application
         menuPresets.getItems().add(pentaDecathlon);
         menuPresets.setDisable(true);
 
+        menuRendering = new Menu("Rendering");
+        ToggleGroup renderingToggleGroup = new ToggleGroup();
+        renderCells = createRadioItem("Animated Cells", renderingToggleGroup);
+        renderCells.setSelected(true);
+        renderMesh = createRadioItem("Mesh", renderingToggleGroup);
+        menuRendering.getItems().add(renderCells);
+        menuRendering.getItems().add(renderMesh);
+        menuRendering.setDisable(true);
+
+        menuBoundary = new Menu("Boundary");
+        ToggleGroup boundaryToggleGroup = new ToggleGroup();
+        deadBorder = createRadioItem("Dead Border", boundaryToggleGroup);
+        deadBorder.setSelected(true);
+        wrapAround = createRadioItem("Wrap Around", boundaryToggleGroup);
+        menuBoundary.getItems().add(deadBorder);
+        menuBoundary.getItems().add(wrapAround);
+        menuBoundary.setDisable(true);
+
+        menuNeighborhood = new Menu("Neighborhood");
+        ToggleGroup neighborhoodToggleGroup = new ToggleGroup();
+        vonNeumann = createRadioItem("Von Neumann (6)", neighborhoodToggleGroup);
+        edges = createRadioItem("Faces and Edges (18)", neighborhoodToggleGroup);
+        moore = createRadioItem("Moore (26)", neighborhoodToggleGroup);
+        moore.setSelected(true);
+        radius2 = createRadioItem("Radius 2 (124)", neighborhoodToggleGroup);
+        menuNeighborhood.getItems().add(vonNeumann);
+        menuNeighborhood.getItems().add(edges);
+        menuNeighborhood.getItems().add(moore);
+        menuNeighborhood.getItems().add(radius2);
+        menuNeighborhood.setDisable(true);
+
+        Menu menuSpeed = new Menu("Speed");
+        ToggleGroup speedToggleGroup = new ToggleGroup();
+        menuSpeed.getItems().add(createSpeedItem("1 Generation per Second", 1, speedToggleGroup));
+        menuSpeed.getItems().add(createSpeedItem("10 Generations per Second", 10, speedToggleGroup));
+        menuSpeed.getItems().add(createSpeedItem("60 Generations per Second", 60, speedToggleGroup));
+        menuSpeed.getItems().add(createSpeedItem("As Fast As Possible", 0, speedToggleGroup));
 
         Menu menuRotation = new Menu("Rotation");
         xRotation = createCheckItem("X-Axis");
@@ -219,7 +301,7 @@ public class GameOfLife extends Application
         menuRotation.getItems().add(xRotation);
         menuRotation.getItems().add(yRotation);
         menuRotation.getItems().add(zRotation);
-        menuBar.getMenus().addAll(menuPresets,menuRotation);
+        menuBar.getMenus().addAll(menuFile,menuPresets,menuRendering,menuBoundary,menuNeighborhood,menuSpeed,menuRotation);
         return menuBar;
     }
 
@@ -274,6 +356,15 @@ public class GameOfLife extends Application
         return radioItem;
     }
 
+    private RadioMenuItem createSpeedItem(String title, double rate, ToggleGroup toggleGroup)
+    {
+        RadioMenuItem speedItem = createRadioItem(title, toggleGroup);
+        speedItem.setSelected(rate == generationsPerSecond);    //None is selected for another --rate
+        speedItem.setOnAction(e -> setGenerationsPerSecond(rate));
+
+        return speedItem;
+    }
+
     private ChoiceBox createChoiceBox()
     {
         ChoiceBox<Integer> choiceBox = new ChoiceBox<>();
@@ -304,19 +395,32 @@ public class GameOfLife extends Application
         return choiceBox;
     }
 
+    /**
+     * Returns the distance of the camera that shows the whole grid, which is -1500 for a 30x30x30 grid.
+     */
+    private double getCameraDistance()
+    {
+        int largestSide = Math.max(gridSize.getWidth(), Math.max(gridSize.getHeight(), gridSize.getDepth()));
+        return CAMERA_INITIAL_DISTANCE*Math.max(largestSide, 30)/30;
+    }
+
     private void setPivotPoint()
     {
-        cellGroupXform.ry.pivotXProperty().set(230);
-        cellGroupXform.ry.pivotYProperty().set(230);
-        cellGroupXform.ry.pivotZProperty().set(230);
+        double pivotX = 230.0*(gridSize.getWidth() + 1)/31;   //The center of the grid
+        double pivotY = 230.0*(gridSize.getDepth() + 1)/31;
+        double pivotZ = 230.0*(gridSize.getHeight() + 1)/31;
 
-        cellGroupXform.rx.pivotXProperty().set(230);
-        cellGroupXform.rx.pivotYProperty().set(230);
-        cellGroupXform.rx.pivotZProperty().set(230);
+        cellGroupXform.ry.pivotXProperty().set(pivotX);
+        cellGroupXform.ry.pivotYProperty().set(pivotY);
+        cellGroupXform.ry.pivotZProperty().set(pivotZ);
 
-        cellGroupXform.rz.pivotXProperty().set(230);
-        cellGroupXform.rz.pivotYProperty().set(230);
-        cellGroupXform.rz.pivotZProperty().set(230);
+        cellGroupXform.rx.pivotXProperty().set(pivotX);
+        cellGroupXform.rx.pivotYProperty().set(pivotY);
+        cellGroupXform.rx.pivotZProperty().set(pivotZ);
+
+        cellGroupXform.rz.pivotXProperty().set(pivotX);
+        cellGroupXform.rz.pivotYProperty().set(pivotY);
+        cellGroupXform.rz.pivotZProperty().set(pivotZ);
     }
 
     private void playGame()
@@ -325,7 +429,11 @@ public class GameOfLife extends Application
         playButton.setText("Pause");
         cellManager.setGameEngineState(true);
         resetButton.setDisable(true);
+        menuFile.setDisable(true);
         menuPresets.setDisable(true);
+        menuRendering.setDisable(true);
+        menuBoundary.setDisable(true);
+        menuNeighborhood.setDisable(true);
     }
 
     private void pauseGame()
@@ -334,23 +442,168 @@ public class GameOfLife extends Application
         playButton.setText("Play");
         cellManager.setGameEngineState(false);
         resetButton.setDisable(false);
+        menuFile.setDisable(false);
         menuPresets.setDisable(false);
+        menuRendering.setDisable(false);
+        menuBoundary.setDisable(false);
+        menuNeighborhood.setDisable(false);
     }
 
     private void resetGame()
     {
-        //cellManager.reset();
-        cellGroupXform.getChildren().clear();
-        cellManager = new CellManager(this,cellGroupXform, R1, R2, R3, R4);
-        cellManager.updateRotationSettings(xRotation.isSelected(), yRotation.isSelected(), zRotation.isSelected());
+        if(!cellManager.reset(gridSize, R1, R2, R3, R4))  //A different grid, so nothing can be reused
+        {
+            cellManager.dispose();
+            cellGroupXform.getChildren().clear();
+            cellManager = new CellManager(this,cellGroupXform, gridSize, R1, R2, R3, R4);
+            cellManager.updateRotationSettings(xRotation.isSelected(), yRotation.isSelected(), zRotation.isSelected());
+            startCheckpoints();
+        }
         pauseGame();
     }
 
-    protected void updateGenerationCount(int newVal)
+    private void startCheckpoints()
+    {
+        if(checkpointDirectory == null)
+        {
+            return;
+        }
+
+        try
+        {
+            cellManager.startCheckpoints(checkpointDirectory, checkpointGenerations, checkpointSeconds);
+        }
+        catch(IOException e)
+        {
+            System.err.println("Could not save checkpoints in " + checkpointDirectory + ": " + e.getMessage());
+        }
+    }
+
+    private FileChooser createFileChooser(String title)
+    {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(title);
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Grid Snapshots", "*.grid"));
+        return fileChooser;
+    }
+
+    private void showError(String message)
+    {
+        new Alert(Alert.AlertType.ERROR, message).showAndWait();
+    }
+
+    private void saveSnapshot()
+    {
+        File file = createFileChooser("Save Snapshot").showSaveDialog(stage);
+
+        if(file == null)
+        {
+            return;
+        }
+
+        try
+        {
+            cellManager.saveSnapshot(file.toPath());
+        }
+        catch(IOException | IllegalArgumentException e)
+        {
+            showError("Could not save the snapshot: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the game with one that continues from a snapshot, with the size, rules and neighborhood of the snapshot.
+     */
+    private void loadSnapshot()
+    {
+        File file = createFileChooser("Load Snapshot").showOpenDialog(stage);
+
+        if(file == null)
+        {
+            return;
+        }
+
+        GridFile snapshotFile;
+
+        try
+        {
+            snapshotFile = GridFile.read(file.toPath());
+        }
+        catch(IOException | IllegalArgumentException e)
+        {
+            showError("Could not load the snapshot: " + e.getMessage());
+            return;
+        }
+
+        cellManager.dispose();
+        cellGroupXform.getChildren().clear();
+        applySnapshotSettings(snapshotFile);
+        setPivotPoint();
+        fitCameraToGrid();
+
+        try
+        {
+            cellManager = new CellManager(this, cellGroupXform, snapshotFile);
+            cellManager.updateRotationSettings(xRotation.isSelected(), yRotation.isSelected(), zRotation.isSelected());
+            startCheckpoints();
+            pauseGame();
+        }
+        catch(IllegalArgumentException e)   //The body of the file is damaged, so a new game is started instead
+        {
+            showError("Could not load the snapshot: " + e.getMessage());
+            resetGame();
+        }
+    }
+
+    /**
+     * Selects the size, rules, neighborhood and boundary of a snapshot in the menus and tool bar.
+     */
+    private void applySnapshotSettings(GridFile snapshotFile)
+    {
+        LifeRules rules = snapshotFile.getRules();
+
+        if(rules.isRange())   //Other rules are only kept by the engine
+        {
+            choiceR1.setValue(rules.getR1());
+            choiceR2.setValue(rules.getR2());
+            choiceR3.setValue(rules.getR3());
+            choiceR4.setValue(rules.getR4());
+        }
+
+        vonNeumann.setSelected(snapshotFile.getNeighborhood() == Neighborhood.VON_NEUMANN);
+        edges.setSelected(snapshotFile.getNeighborhood() == Neighborhood.EDGES);
+        moore.setSelected(snapshotFile.getNeighborhood() == Neighborhood.MOORE);
+        radius2.setSelected(snapshotFile.getNeighborhood() == Neighborhood.MOORE_RADIUS_2);
+        wrapAround.setSelected(snapshotFile.isToroidal());
+        deadBorder.setSelected(!snapshotFile.isToroidal());
+        gridSize = new GridSize(snapshotFile.getWidth(), snapshotFile.getHeight(), snapshotFile.getDepth());
+    }
+
+    protected double getGenerationsPerSecond()
+    {
+        return generationsPerSecond;
+    }
+
+    private void setGenerationsPerSecond(double rate)
+    {
+        generationsPerSecond = rate;
+        cellManager.setGenerationsPerSecond(rate);
+    }
+
+    protected void updateGenerationCount(long newVal)
     {
         generationVal.setText(String.valueOf(newVal));
     }
 
+    /**
+     * Shows the still life or oscillator the grid settled into.
+     * @param description  The description of the cycle, or null if none was found
+     */
+    protected void updateCycleStatus(String description)
+    {
+        cycleVal.setText(description != null ? description : "none");
+    }
+
     protected void updateDensityVal(int newVal)
     {
         densityVal.setText(String.valueOf(newVal) + "%");
@@ -359,7 +612,27 @@ public class GameOfLife extends Application
     @Override
     public void start(Stage primaryStage) throws Exception
     {
+        stage = primaryStage;
+        String size = getParameters().getNamed().get("size");   //--size=WxHxD
 
+        if(size != null)
+        {
+            gridSize = GridSize.parse(size);
+        }
+
+        String rate = getParameters().getNamed().get("rate");   //--rate=N generations per second, 0 as fast as possible
+
+        if(rate != null)
+        {
+            generationsPerSecond = Double.parseDouble(rate);
+
+            if(!(generationsPerSecond >= 0) || Double.isInfinite(generationsPerSecond))
+            {
+                throw new IllegalArgumentException("The rate must be 0 or a positive number of generations per second: " + rate);
+            }
+        }
+
+        GridFile resumeFile = readCheckpointParameters();
         setPivotPoint();
         sceneXform.getChildren().add(cellGroupXform);
         root.getChildren().add(sceneXform);
@@ -372,7 +645,19 @@ public class GameOfLife extends Application
         borderPane.setBottom(addGUI());
         borderPane.setCenter(cellSubScene);
         borderPane.setPrefSize(800,500);
-        cellManager = new CellManager(this,cellGroupXform, R1, R2, R3, R4);
+
+        if(resumeFile != null)
+        {
+            applySnapshotSettings(resumeFile);   //Needs the menus, so the camera is moved afterwards
+            setPivotPoint();
+            fitCameraToGrid();
+            cellManager = new CellManager(this, cellGroupXform, resumeFile);
+        }
+        else
+        {
+            cellManager = new CellManager(this,cellGroupXform, gridSize, R1, R2, R3, R4);
+        }
+        startCheckpoints();
         Scene scene = new Scene(borderPane);
         scene.setFill(Color.GREY);
         handleKeyboard(scene, cellGroupXform);
@@ -382,6 +667,39 @@ public class GameOfLife extends Application
         primaryStage.show();
     }
 
+    @Override
+    public void stop()
+    {
+        cellManager.dispose();  //Finishes writing a pending checkpoint
+    }
+
+    /**
+     * Reads --checkpoint=dir, --checkpoint-every=N, --checkpoint-seconds=T and --resume.
+     * @return GridFile the latest valid checkpoint to resume from, or null to start a new game
+     * @throws IOException If the checkpoint directory holds checkpoints but none of them can be resumed from
+     */
+    private GridFile readCheckpointParameters() throws IOException
+    {
+        String directory = getParameters().getNamed().get("checkpoint");
+
+        if(directory == null)
+        {
+            return null;
+        }
+
+        checkpointDirectory = Paths.get(directory);
+        String every = getParameters().getNamed().get("checkpoint-every");
+        String seconds = getParameters().getNamed().get("checkpoint-seconds");
+        checkpointGenerations = every != null ? Long.parseLong(every) : 0;
+        checkpointSeconds = seconds != null ? Double.parseDouble(seconds) : (every != null ? 0 : 300);
+
+        if(!getParameters().getUnnamed().contains("--resume"))
+        {
+            return null;
+        }
+        return Checkpointer.findLatest(checkpointDirectory);
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
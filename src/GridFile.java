@@ -0,0 +1,484 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+
+/**
+ * Public class GridFile
+ * A snapshot of a grid saved in a binary file, with the rules, the neighborhood and the generation it was saved at.
+ * The file is a HEADER_BYTES header followed by the body, all numbers little endian:
+ *  0   int   MAGIC                 8   int  width            24  int   neighborhood size   40  long  population
+ *  4   int   VERSION               12  int  height           28  int   encoding            48  long  body entries
+ *                                  16  int  depth            32  long  generation          56  long  CRC32 of the body
+ *                                  20  int  padding
+ *  64  2 longs: neighbor counts that give birth, bit n for n neighbors.  80  2 longs: neighbor counts that survive.
+ *  96  int   flags                 100 - 119 unused, 0
+ *  120 long  CRC32 of the first 120 bytes of the header
+ * The body is either RAW, every word of the grid in GridStore order, or SPARSE, an index and a word for every word
+ * that holds a living cell. The smaller one is written.
+ * The body is read and written through buffers mapped with FileChannel.map(), so a grid is copied between the file and
+ * its GridStore without passing through the heap. A file is written next to its final name and then moved over it, so
+ * a crash while saving never leaves a half written snapshot behind.
+ */
+public class GridFile
+{
+  private static final int MAGIC = 0x4C463344;  //"D3FL" in the file, for 3D Life
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 128;
+  private static final int RAW = 0;
+  private static final int SPARSE = 1;
+  private static final int TOROIDAL = 1;  //Flag of a grid that wraps around at its edges
+  private static final long REGION_BYTES = (long)OffHeapGrid.CHUNK_WORDS*8;  //Bytes of the body mapped at once
+  private final Path path;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int padding;
+  private final Neighborhood neighborhood;
+  private final LifeRules rules;
+  private final int encoding;
+  private final long generation;
+  private final long population;
+  private final long entries;
+  private final long bodyChecksum;
+  private final boolean toroidal;
+
+  private GridFile(Path path, ByteBuffer header) throws IOException
+  {
+    this.path = path;
+
+    if(header.getInt(0) != MAGIC)
+    {
+      throw new IOException(path + " is not a grid snapshot");
+    }
+
+    if(header.getInt(4) != VERSION)
+    {
+      throw new IOException(path + " has version " + header.getInt(4) + ", only version " + VERSION + " can be read");
+    }
+
+    if(checksum(header, 0, 120) != header.getLong(120))
+    {
+      throw new IOException(path + " has a damaged header");
+    }
+
+    width = header.getInt(8);
+    height = header.getInt(12);
+    depth = header.getInt(16);
+    padding = header.getInt(20);
+    neighborhood = Neighborhood.fromName(String.valueOf(header.getInt(24)));
+    encoding = header.getInt(28);
+    generation = header.getLong(32);
+    population = header.getLong(40);
+    entries = header.getLong(48);
+    bodyChecksum = header.getLong(56);
+    toroidal = (header.getInt(96) & TOROIDAL) != 0;
+    rules = LifeRules.fromSets(BitSet.valueOf(new long[] {header.getLong(64), header.getLong(72)}),
+        BitSet.valueOf(new long[] {header.getLong(80), header.getLong(88)}));
+  }
+
+  /**
+   * Reads the header of a snapshot. The body is only read by restore() or readInto().
+   * @param path  The file to read
+   * @return GridFile snapshot
+   * @throws IOException If the file cannot be read or is not a snapshot
+   */
+  public static GridFile read(Path path) throws IOException
+  {
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+    {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+      while(header.hasRemaining())
+      {
+        if(channel.read(header, header.position()) < 0)
+        {
+          throw new IOException(path + " is too short to be a grid snapshot");
+        }
+      }
+      return new GridFile(path, header);
+    }
+  }
+
+  /**
+   * Saves the current generation of an engine.
+   * @param path  The file to write
+   * @param engine  The engine to save
+   * @throws IOException If the file cannot be written
+   */
+  public static void save(Path path, LifeEngine engine) throws IOException
+  {
+    GridStore grid = new OffHeapGrid(engine.getWidth(), engine.getHeight(), engine.getDepth(),
+        engine.getNeighborhood().getRadius());
+
+    try
+    {
+      engine.copyTo(grid);
+      boolean toroidal = engine instanceof BitGridEngine && ((BitGridEngine)engine).isToroidal();
+      write(path, grid, engine.getRules(), engine.getNeighborhood(), engine.getGeneration(), toroidal);
+    }
+    finally
+    {
+      grid.dispose();
+    }
+  }
+
+  /**
+   * Saves a grid.
+   * @param path  The file to write
+   * @param grid  The grid to save
+   * @param rules The rules the grid is advanced with
+   * @param neighborhood  The cells counted as neighbors
+   * @param generation  The generation the grid holds
+   * @param toroidal  True if the grid wraps around at its edges
+   * @throws IOException If the file cannot be written
+   */
+  public static void write(Path path, GridStore grid, LifeRules rules, Neighborhood neighborhood, long generation,
+      boolean toroidal) throws IOException
+  {
+    long words = (long)grid.getRowCount()*grid.getWordsPerRow();
+    long usedWords = 0;
+    long population = 0;
+
+    for(int n = 0; n < words; n++)
+    {
+      long word = grid.getWord(n);
+
+      if(word != 0)
+      {
+        usedWords++;
+        population += Long.bitCount(word);
+      }
+    }
+
+    int encoding = 2*usedWords < words ? SPARSE : RAW;
+    long entries = encoding == SPARSE ? usedWords : words;
+    long bodyBytes = encoding == SPARSE ? 16*entries : 8*entries;
+    Path partPath = path.resolveSibling(path.getFileName() + ".part");
+
+    try(FileChannel channel = FileChannel.open(partPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+        StandardOpenOption.READ, StandardOpenOption.WRITE))
+    {
+      ByteBuffer[] regions = map(channel, FileChannel.MapMode.READ_WRITE, bodyBytes);
+      long checksum;
+
+      try
+      {
+        if(encoding == RAW)
+        {
+          new OffHeapGrid(grid.getWidth(), grid.getHeight(), grid.getDepth(), grid.getPadding(), regions).copyFrom(grid);
+        }
+        else
+        {
+          writeSparse(grid, words, regions);
+        }
+
+        checksum = checksum(regions);
+
+        for(ByteBuffer region : regions)
+        {
+          ((MappedByteBuffer)region).force();
+        }
+      }
+      finally
+      {
+        unmap(regions);
+      }
+
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(0, MAGIC);
+      header.putInt(4, VERSION);
+      header.putInt(8, grid.getWidth());
+      header.putInt(12, grid.getHeight());
+      header.putInt(16, grid.getDepth());
+      header.putInt(20, grid.getPadding());
+      header.putInt(24, neighborhood.getSize());
+      header.putInt(28, encoding);
+      header.putLong(32, generation);
+      header.putLong(40, population);
+      header.putLong(48, entries);
+      header.putLong(56, checksum);
+      header.putInt(96, toroidal ? TOROIDAL : 0);
+
+      for(int neighbors = 0; neighbors <= LifeRules.MAX_NEIGHBORS; neighbors++)
+      {
+        if(rules.isBorn(neighbors))
+        {
+          header.putLong(64 + 8*(neighbors/64), header.getLong(64 + 8*(neighbors/64)) | 1L << neighbors);
+        }
+
+        if(rules.survives(neighbors))
+        {
+          header.putLong(80 + 8*(neighbors/64), header.getLong(80 + 8*(neighbors/64)) | 1L << neighbors);
+        }
+      }
+      header.putLong(120, checksum(header, 0, 120));
+
+      while(header.hasRemaining())
+      {
+        channel.write(header, header.position());
+      }
+      channel.force(true);
+    }
+
+    try
+    {
+      Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch(AtomicMoveNotSupportedException e)
+    {
+      Files.move(partPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Writes an index and a word for every word that holds a living cell.
+   */
+  private static void writeSparse(GridStore grid, long words, ByteBuffer[] regions)
+  {
+    int region = 0;
+    LongBuffer entries = regions.length > 0 ? regions[0].asLongBuffer() : null;
+
+    for(int n = 0; n < words; n++)
+    {
+      long word = grid.getWord(n);
+
+      if(word != 0)
+      {
+        if(!entries.hasRemaining())
+        {
+          entries = regions[++region].asLongBuffer();
+        }
+        entries.put(n);
+        entries.put(word);
+      }
+    }
+  }
+
+  /**
+   * Copies the saved grid into a GridStore with the same dimensions, after checking the body against its checksum.
+   * @param target  The GridStore to copy into
+   * @throws IOException If the file cannot be read or is damaged
+   */
+  public void readInto(GridStore target) throws IOException
+  {
+    if(target.getWidth() != width || target.getHeight() != height || target.getDepth() != depth)
+    {
+      throw new IllegalArgumentException("The snapshot is " + width + "x" + height + "x" + depth + ", the grid is "
+          + target.getWidth() + "x" + target.getHeight() + "x" + target.getDepth());
+    }
+
+    readBody(target);
+  }
+
+  /**
+   * Checks the saved grid against its checksum without copying it anywhere.
+   * @throws IOException If the file cannot be read or is damaged
+   */
+  public void verify() throws IOException
+  {
+    readBody(null);
+  }
+
+  /**
+   * Maps the body, checks it against its checksum and copies it into a GridStore unless it is null.
+   */
+  private void readBody(GridStore target) throws IOException
+  {
+    long bodyBytes = encoding == SPARSE ? 16*entries : 8*entries;
+
+    try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+    {
+      if(channel.size() < HEADER_BYTES + bodyBytes)
+      {
+        throw new IOException(path + " is shorter than its header says");
+      }
+
+      ByteBuffer[] regions = map(channel, FileChannel.MapMode.READ_ONLY, bodyBytes);
+
+      try
+      {
+        if(checksum(regions) != bodyChecksum)
+        {
+          throw new IOException(path + " is damaged, the checksum of the grid does not match");
+        }
+
+        if(target == null)
+        {
+          return;
+        }
+
+        if(encoding == RAW)
+        {
+          target.copyFrom(new OffHeapGrid(width, height, depth, padding, regions));
+        }
+        else
+        {
+          readSparse(target, regions);
+        }
+      }
+      finally
+      {
+        unmap(regions);
+      }
+    }
+  }
+
+  private void readSparse(GridStore target, ByteBuffer[] regions)
+  {
+    target.clear();
+    int rowsPerPlane = depth + 2*padding;
+    int wordsPerRow = (width + 2*padding + 63) >>> 6;
+
+    for(ByteBuffer region : regions)
+    {
+      LongBuffer entries = region.asLongBuffer();
+
+      while(entries.hasRemaining())
+      {
+        int index = (int)entries.get();
+        long word = entries.get();
+
+        if(target.getPadding() == padding)
+        {
+          target.setWord(index, word);
+          continue;
+        }
+
+        int row = index/wordsPerRow;
+        int j = row/rowsPerPlane - padding;
+        int k = row%rowsPerPlane - padding;
+
+        while(word != 0)  //The word is laid out differently in the target
+        {
+          int i = (index%wordsPerRow)*64 + Long.numberOfTrailingZeros(word) - padding;
+          word &= word - 1;
+          target.setAlive(i, j, k, true);
+        }
+      }
+    }
+  }
+
+  /**
+   * Replaces the cells of an engine with the same dimensions with the saved grid, and continues from the saved
+   * generation.
+   * @param engine  The engine to restore
+   * @throws IOException If the file cannot be read or is damaged
+   */
+  public void restore(LifeEngine engine) throws IOException
+  {
+    GridStore grid = new OffHeapGrid(width, height, depth, engine.getNeighborhood().getRadius());
+
+    try
+    {
+      readInto(grid);
+      engine.restore(grid, generation);
+    }
+    finally
+    {
+      grid.dispose();
+    }
+  }
+
+  /**
+   * Maps the body in regions of at most REGION_BYTES.
+   */
+  private static ByteBuffer[] map(FileChannel channel, FileChannel.MapMode mode, long bodyBytes) throws IOException
+  {
+    ByteBuffer[] regions = new ByteBuffer[(int)((bodyBytes + REGION_BYTES - 1)/REGION_BYTES)];
+
+    for(int r = 0; r < regions.length; r++)
+    {
+      long offset = r*REGION_BYTES;
+      regions[r] = channel.map(mode, HEADER_BYTES + offset, Math.min(REGION_BYTES, bodyBytes - offset))
+          .order(ByteOrder.LITTLE_ENDIAN);
+    }
+    return regions;
+  }
+
+  private static void unmap(ByteBuffer[] regions)
+  {
+    for(ByteBuffer region : regions)
+    {
+      OffHeapGrid.free(region);
+    }
+  }
+
+  private static long checksum(ByteBuffer[] regions)
+  {
+    CRC32 crc = new CRC32();
+
+    for(ByteBuffer region : regions)
+    {
+      crc.update(region.duplicate());
+    }
+    return crc.getValue();
+  }
+
+  private static long checksum(ByteBuffer buffer, int offset, int length)
+  {
+    CRC32 crc = new CRC32();
+    ByteBuffer bytes = buffer.duplicate();
+    bytes.position(offset).limit(offset + length);
+    crc.update(bytes);
+    return crc.getValue();
+  }
+
+  public Path getPath()
+  {
+    return path;
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return population;
+  }
+
+  /**
+   * Returns a boolean value indicating if the saved grid wraps around at its edges.
+   * @return boolean toroidal
+   */
+  public boolean isToroidal()
+  {
+    return toroidal;
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Public class GridSize
+ * The number of cells along each axis of a grid, which do not need to be equal.
+ */
+public class GridSize
+{
+  public static final GridSize DEFAULT = new GridSize(30, 30, 30);
+  private final int width;
+  private final int height;
+  private final int depth;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   */
+  public GridSize(int width, int height, int depth)
+  {
+    if(width < 1 || height < 1 || depth < 1)
+    {
+      throw new IllegalArgumentException("The grid needs at least one cell along each axis");
+    }
+
+    if(BitGrid.getWordCount(width, height, depth) > Integer.MAX_VALUE - 8)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid does not fit in a single array");
+    }
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+  }
+
+  /**
+   * Reads a size written as WxHxD, or as a single number for a cube.
+   * @param size  The size, e.g. 1024x1024x16
+   * @return GridSize size
+   */
+  public static GridSize parse(String size)
+  {
+    String[] parts = size.trim().toLowerCase().split("x");
+
+    try
+    {
+      if(parts.length == 1)
+      {
+        int edge = Integer.parseInt(parts[0].trim());
+        return new GridSize(edge, edge, edge);
+      }
+
+      if(parts.length == 3)
+      {
+        return new GridSize(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), Integer.parseInt(parts[2].trim()));
+      }
+    }
+    catch(NumberFormatException e)
+    {
+      throw new IllegalArgumentException("Not a grid size: " + size);
+    }
+    throw new IllegalArgumentException("A grid size is written as WxHxD or as a single number: " + size);
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public long getCellCount()
+  {
+    return (long)width*height*depth;
+  }
+
+  /**
+   * Returns the number of bytes one BitGrid of this size uses.
+   * @return long bytes
+   */
+  public long getGridBytes()
+  {
+    return BitGrid.getWordCount(width, height, depth)*Long.BYTES;
+  }
+
+  /**
+   * Describes the memory used by a number of BitGrids of this size.
+   * @param grids The number of grids
+   * @return String description
+   */
+  public String describeMemory(int grids)
+  {
+    return String.format("%s grid: %,d cells, %s per grid, %s for %d grids",
+        this, getCellCount(), formatBytes(getGridBytes()), formatBytes(getGridBytes()*grids), grids);
+  }
+
+  private static String formatBytes(long bytes)
+  {
+    if(bytes < 1024*1024)
+    {
+      return String.format("%.1f KB", bytes/1024.0);
+    }
+
+    if(bytes < 1024L*1024*1024)
+    {
+      return String.format("%.1f MB", bytes/(1024.0*1024));
+    }
+    return String.format("%.2f GB", bytes/(1024.0*1024*1024));
+  }
+
+  @Override
+  public String toString()
+  {
+    return width + "x" + height + "x" + depth;
+  }
+}
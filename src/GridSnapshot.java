@@ -0,0 +1,58 @@
+/**
+ * Public class GridSnapshot
+ * A copy of a grid as it was at the end of a generation.
+ */
+public class GridSnapshot
+{
+  private final GridStore grid;
+  private long generation = -1;
+  private long population;
+
+  /**
+   * Class Constructor
+   * @param grid Specifies the GridStore the snapshot is copied into
+   */
+  public GridSnapshot(GridStore grid)
+  {
+    this.grid = grid;
+  }
+
+  /**
+   * Copies the current generation of an engine into the snapshot.
+   * @param engine The engine to copy
+   */
+  public void capture(LifeEngine engine)
+  {
+    engine.copyTo(grid);
+    generation = engine.getGeneration();
+    population = grid.countAlive();
+  }
+
+  /**
+   * Empties the snapshot, so it holds no generation until the next capture.
+   */
+  public void clear()
+  {
+    generation = -1;
+    population = 0;
+  }
+
+  public GridStore getGrid()
+  {
+    return grid;
+  }
+
+  /**
+   * Returns the generation held by the snapshot, or -1 if nothing has been captured yet.
+   * @return long generation
+   */
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return population;
+  }
+}
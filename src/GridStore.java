@@ -0,0 +1,370 @@
+/**
+ * Public interface GridStore
+ * Stores the state of every cell in a grid, one bit per cell.
+ * Cells are packed along the x axis into rows of 64 bit words. Rows are indexed flat in row-major order, z then y,
+ * and the grid is surrounded by a dead border so that neighbor probes never need bounds checks.
+ * Cell coordinates passed to a GridStore start at 0 and do not include the border.
+ */
+public interface GridStore
+{
+  int getWidth();
+
+  int getHeight();
+
+  int getDepth();
+
+  /**
+   * Returns the number of border cells on each side of the grid.
+   * @return int padding
+   */
+  int getPadding();
+
+  /**
+   * Returns the number of words that make up a single row along the x axis, border included.
+   * @return int wordsPerRow
+   */
+  int getWordsPerRow();
+
+  /**
+   * Returns the number of rows along the y axis for a single z, border included.
+   * @return int rowsPerPlane
+   */
+  int getRowsPerPlane();
+
+  /**
+   * Returns the total number of rows, border included.
+   * @return int rowCount
+   */
+  int getRowCount();
+
+  long getWord(int index);
+
+  void setWord(int index, long value);
+
+  /**
+   * Kills every cell in the grid.
+   */
+  void clear();
+
+  /**
+   * Frees memory the GridStore holds outside of the heap. The GridStore cannot be used afterwards.
+   */
+  default void dispose()
+  {
+  }
+
+  /**
+   * Returns the index of the row holding the cells at (j, k).
+   * @param j z coordinate
+   * @param k y coordinate
+   * @return int row index
+   */
+  default int rowIndex(int j, int k)
+  {
+    int padding = getPadding();
+    return (j + padding)*getRowsPerPlane() + k + padding;
+  }
+
+  default boolean isAlive(int i, int j, int k)
+  {
+    int x = i + getPadding();
+    long word = getWord(rowIndex(j,k)*getWordsPerRow() + (x >>> 6));
+    return (word & (1L << x)) != 0;
+  }
+
+  default void setAlive(int i, int j, int k, boolean state)
+  {
+    int x = i + getPadding();
+    int index = rowIndex(j,k)*getWordsPerRow() + (x >>> 6);
+    long word = getWord(index);
+
+    if(state)
+    {
+      setWord(index, word | (1L << x));
+    }
+    else
+    {
+      setWord(index, word & ~(1L << x));
+    }
+  }
+
+  /**
+   * Returns the number of living cells in the grid.
+   * @return long population
+   */
+  default long countAlive()
+  {
+    long population = 0;
+    int words = getRowCount()*getWordsPerRow();
+
+    for(int n = 0; n < words; n++)
+    {
+      population += Long.bitCount(getWord(n));
+    }
+    return population;
+  }
+
+  /**
+   * Returns a 64 bit hash of the state of every cell, the XOR of hashWord() over every word. A word that changes
+   * changes the hash by hashWord() of its old and its new value, so an engine can keep the hash up to date from the
+   * words it writes. Grids with a different padding hash differently.
+   * @return long hash
+   */
+  default long hashWords()
+  {
+    long hash = 0;
+    int words = getRowCount()*getWordsPerRow();
+
+    for(int n = 0; n < words; n++)
+    {
+      hash ^= hashWord(n, getWord(n));
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the share of a single word in hashWords(), like a Zobrist key for each value of each word. Dead words hash
+   * to 0, so an empty grid hashes to 0.
+   * @param index The index of the word
+   * @param word  The value of the word
+   * @return long hash
+   */
+  static long hashWord(int index, long word)
+  {
+    if(word == 0)
+    {
+      return 0;
+    }
+
+    long hash = word ^ index*0x9e3779b97f4a7c15L;   //The finalizer of MurmurHash3
+    hash = (hash ^ (hash >>> 33))*0xff51afd7ed558ccdL;
+    hash = (hash ^ (hash >>> 33))*0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  /**
+   * Passes every living cell of the grid to a sink, row by row.
+   * @param sink  Receives the coordinates of every living cell
+   */
+  default void forEachLiveCell(Preset.CellSink sink)
+  {
+    int padding = getPadding();
+    int wordsPerRow = getWordsPerRow();
+
+    for(int j = 0; j < getHeight(); j++) //For every z
+    {
+      for(int k = 0; k < getDepth(); k++) //For every y
+      {
+        int row = rowIndex(j, k)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          long word = getWord(row + w);
+
+          while(word != 0)
+          {
+            int i = w*64 + Long.numberOfTrailingZeros(word) - padding;
+            word &= word - 1;
+
+            if(i >= 0 && i < getWidth())  //Skips the border
+            {
+              sink.addLiveCell(i, j, k);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Copies the state of every cell from another GridStore with the same dimensions.
+   * A GridStore with a different padding is copied row by row, with the words shifted by the difference of the paddings.
+   * @param source The GridStore to copy
+   */
+  default void copyFrom(GridStore source)
+  {
+    if(source.getWidth() != getWidth() || source.getHeight() != getHeight() || source.getDepth() != getDepth())
+    {
+      throw new IllegalArgumentException("Grid dimensions do not match");
+    }
+
+    if(source.getPadding() != getPadding())
+    {
+      copyShiftedFrom(source);
+      return;
+    }
+
+    int words = getRowCount()*getWordsPerRow();
+
+    for(int n = 0; n < words; n++)
+    {
+      setWord(n, source.getWord(n));
+    }
+  }
+
+  private void copyShiftedFrom(GridStore source)
+  {
+    int padding = getPadding();
+    int wordsPerRow = getWordsPerRow();
+    int rowsPerPlane = getRowsPerPlane();
+    int sourceWordsPerRow = source.getWordsPerRow();
+    int shift = padding - source.getPadding();  //Bits between a cell in this grid and the same cell in the source
+
+    for(int row = 0; row < getRowCount(); row++)
+    {
+      int j = row/rowsPerPlane - padding;
+      int k = row%rowsPerPlane - padding;
+      boolean interior = j >= 0 && j < getHeight() && k >= 0 && k < getDepth();
+      int sourceRow = interior ? source.rowIndex(j, k)*sourceWordsPerRow : 0;
+
+      for(int w = 0; w < wordsPerRow; w++)
+      {
+        long word = interior ? source.getBits(sourceRow, sourceWordsPerRow, w*64 - shift) & getInteriorMask(w) : 0;
+        setWord(row*wordsPerRow + w, word);
+      }
+    }
+  }
+
+  /**
+   * Returns the 64 bits of a row starting at any bit, with the bits outside of the row dead.
+   */
+  private long getBits(int rowStart, int wordsPerRow, int bit)
+  {
+    int w = Math.floorDiv(bit, 64);
+    int offset = bit & 63;
+    long low = w >= 0 && w < wordsPerRow ? getWord(rowStart + w) : 0;
+
+    if(offset == 0)
+    {
+      return low;
+    }
+    long high = w + 1 >= 0 && w + 1 < wordsPerRow ? getWord(rowStart + w + 1) : 0;
+    return (low >>> offset) | (high << (64 - offset));
+  }
+
+  /**
+   * Returns the bits of a word of a row that hold cells rather than the border.
+   */
+  private long getInteriorMask(int w)
+  {
+    int first = Math.max(getPadding() - w*64, 0);
+    int end = Math.min(getPadding() + getWidth() - w*64, 64);
+
+    if(first >= end)
+    {
+      return 0;
+    }
+    return (end == 64 ? -1L : (1L << end) - 1) & (-1L << first);
+  }
+
+  /**
+   * Fills the border with copies of the cells on the opposite side of the grid, so that neighbor probes see a grid
+   * that wraps around along every axis. The x border is filled first, then the y border rows and then the z border
+   * planes, so edges and corners of the border are wrapped along every axis as well.
+   * Every side of the grid must be at least as long as the padding.
+   */
+  default void wrapBorder()
+  {
+    int padding = getPadding();
+    int width = getWidth();
+    int wordsPerRow = getWordsPerRow();
+    int planeWords = getRowsPerPlane()*wordsPerRow;
+
+    for(int j = 0; j < getHeight(); j++) //For every z
+    {
+      for(int k = 0; k < getDepth(); k++) //For every y
+      {
+        int row = rowIndex(j, k)*wordsPerRow;
+
+        for(int d = 0; d < 2*padding; d++)  //Left border from the right side, then right border from the left side
+        {
+          int fromX = d < padding ? width + d : d;
+          int toX = d < padding ? d : width + d;
+          long bit = 1L << toX;
+          long word = getWord(row + (toX >>> 6));
+          boolean alive = (getWord(row + (fromX >>> 6)) & (1L << fromX)) != 0;
+          setWord(row + (toX >>> 6), alive ? word | bit : word & ~bit);
+        }
+      }
+
+      for(int d = 0; d < padding; d++)
+      {
+        int top = rowIndex(j, d - padding)*wordsPerRow;
+        int bottom = rowIndex(j, getDepth() + d)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          setWord(top + w, getWord(top + w + getDepth()*wordsPerRow));
+          setWord(bottom + w, getWord(bottom + w - getDepth()*wordsPerRow));
+        }
+      }
+    }
+
+    for(int d = 0; d < padding; d++)
+    {
+      int front = rowIndex(d - padding, -padding)*wordsPerRow;
+      int back = rowIndex(getHeight() + d, -padding)*wordsPerRow;
+
+      for(int n = 0; n < planeWords; n++)
+      {
+        setWord(front + n, getWord(front + n + getHeight()*planeWords));
+        setWord(back + n, getWord(back + n - getHeight()*planeWords));
+      }
+    }
+  }
+
+  /**
+   * Kills every cell in the border again after wrapBorder().
+   */
+  default void clearBorder()
+  {
+    int padding = getPadding();
+    int wordsPerRow = getWordsPerRow();
+    int planeWords = getRowsPerPlane()*wordsPerRow;
+    int end = padding + getWidth();   //First x of the right border
+
+    for(int j = 0; j < getHeight(); j++) //For every z
+    {
+      for(int k = 0; k < getDepth(); k++) //For every y
+      {
+        int row = rowIndex(j, k)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          if(w*64 >= padding && w*64 + 64 <= end)  //Words inside the grid hold no border cells
+          {
+            w = end/64 - 1;
+            continue;
+          }
+          long above = w*64 >= padding ? -1L : -1L << (padding - w*64);
+          long below = w*64 + 64 <= end ? -1L : (end <= w*64 ? 0 : -1L >>> (w*64 + 64 - end));
+          setWord(row + w, getWord(row + w) & above & below);
+        }
+      }
+
+      for(int d = 0; d < padding; d++)
+      {
+        int top = rowIndex(j, d - padding)*wordsPerRow;
+        int bottom = rowIndex(j, getDepth() + d)*wordsPerRow;
+
+        for(int w = 0; w < wordsPerRow; w++)
+        {
+          setWord(top + w, 0);
+          setWord(bottom + w, 0);
+        }
+      }
+    }
+
+    for(int d = 0; d < padding; d++)
+    {
+      int front = rowIndex(d - padding, -padding)*wordsPerRow;
+      int back = rowIndex(getHeight() + d, -padding)*wordsPerRow;
+
+      for(int n = 0; n < planeWords; n++)
+      {
+        setWord(front + n, 0);
+        setWord(back + n, 0);
+      }
+    }
+  }
+}
@@ -0,0 +1,644 @@
+import com.sun.management.ThreadMXBean;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Public class HeadlessRunner
+ * Runs a simulation from the command line without JavaFX and prints timing and population statistics.
+ * Usage: java HeadlessRunner [options]
+ *  --size WxHxD          Size of the grid, or a single number for a cube (default 30x30x30)
+ *  --rules R1,R2,R3,R4   Rules of the simulation, also in B/S notation like B5/S45 (default 3,3,3,2, or the rules of the preset)
+ *  --preset name         Starting pattern: random, cross-section, pokeball, maze-cube, two-toad or pentadecathlon
+ *  --seed file           Starting pattern read from a file with one "x z y" cell per line, starting at 0. # starts a comment.
+ *  --generations N       Number of generations to run (default 100)
+ *  --threads T           Number of threads used by the bit engine, the other engines run on one (default 1)
+ *  --neighborhood name   von-neumann (6), 18, moore (26) or radius-2 (124) (default moore)
+ *  --engine type         bit, incremental, dense, vector, sparse or octree (default bit)
+ *  --random-seed S       Seed of the random preset
+ *  --report N            Prints the population every N generations (default 0, never)
+ *  --toroidal            Wraps the grid around at its edges. Only the bit engine has edges.
+ *  --off-heap            Stores the grids of the bit engine in direct buffers outside of the heap
+ *  --load file           Starts from a snapshot saved by --save or the GUI, with its size, rules, neighborhood and generation
+ *  --save file           Saves a snapshot of the last generation
+ *  --checkpoint dir      Saves checkpoints of the run in a directory on a background thread
+ *  --checkpoint-every N  Generations between checkpoints (default 0, only by time)
+ *  --checkpoint-seconds T  Seconds between checkpoints (default 300, or 0 if --checkpoint-every is given)
+ *  --resume              Continues from the latest valid checkpoint, if there is one, up to --generations in total
+ *  --cycles action       Detects still lifes and oscillators and then reports them, stops, or fast-forwards over whole
+ *                        periods to the last generation: report, stop or fast-forward. Bounded engines only.
+ *  --cycle-history N     Generations remembered to detect cycles, the longest period found (default 1024)
+ *  --check-tiles         Steps a copy of the bit engine that evaluates every tile next to the run, and stops with an
+ *                        error at the first generation that differs, which would be a tile wrongly skipped
+ */
+public class HeadlessRunner
+{
+  private int width = 30;
+  private int height = 30;
+  private int depth = 30;
+  private LifeRules rules;
+  private Preset preset = Preset.RANDOM;
+  private String seedFile;
+  private long generations = 100;
+  private int threads = 1;
+  private EngineType engineType = EngineType.BIT;
+  private Neighborhood neighborhood = Neighborhood.MOORE;
+  private Random rand = new Random();
+  private long reportInterval;
+  private boolean toroidal;
+  private boolean offHeap;
+  private GridFile loadFile;
+  private String saveFile;
+  private String checkpointDirectory;
+  private long checkpointGenerations;
+  private long checkpointSeconds = -1;
+  private boolean resume;
+  private String cycleAction;
+  private int cycleHistory = CycleDetector.DEFAULT_HISTORY;
+  private boolean checkTiles;
+
+  public static void main(String[] args)
+  {
+    HeadlessRunner runner = new HeadlessRunner();
+
+    try
+    {
+      runner.parseArguments(args);
+      runner.run();
+    }
+    catch(IllegalArgumentException | IOException e)
+    {
+      System.err.println("Error: " + e.getMessage());
+      printUsage();
+      System.exit(1);
+    }
+    catch(IllegalStateException e)  //The run failed a check, the options were fine
+    {
+      System.err.println("Error: " + e.getMessage());
+      System.exit(1);
+    }
+  }
+
+  private static void printUsage()
+  {
+    System.err.println("Usage: java HeadlessRunner [--size WxHxD] [--rules R1,R2,R3,R4 | --rules B5/S45] [--preset name | --seed file]");
+    System.err.println("       [--generations N] [--threads T] [--neighborhood name] [--engine bit|incremental|dense|vector|sparse|octree] [--random-seed S] [--report N] [--toroidal] [--off-heap]");
+    System.err.println("       [--load file] [--save file] [--checkpoint dir] [--checkpoint-every N] [--checkpoint-seconds T] [--resume]");
+    System.err.println("       [--cycles report|stop|fast-forward] [--cycle-history N] [--check-tiles]");
+  }
+
+  /**
+   * Reads the command line options.
+   * @param args  The command line arguments
+   */
+  private void parseArguments(String[] args) throws IOException
+  {
+    for(int a = 0; a < args.length; a++)
+    {
+      String option = args[a];
+
+      if(option.equals("--toroidal"))
+      {
+        toroidal = true;
+        continue;
+      }
+
+      if(option.equals("--off-heap"))
+      {
+        offHeap = true;
+        continue;
+      }
+
+      if(option.equals("--resume"))
+      {
+        resume = true;
+        continue;
+      }
+
+      if(option.equals("--check-tiles"))
+      {
+        checkTiles = true;
+        continue;
+      }
+
+      if(a + 1 >= args.length)
+      {
+        throw new IllegalArgumentException("Missing value for " + option);
+      }
+      String value = args[++a];
+
+      switch(option)
+      {
+        case "--size":
+          GridSize size = GridSize.parse(value);
+          width = size.getWidth();
+          height = size.getHeight();
+          depth = size.getDepth();
+          break;
+        case "--rules":
+          rules = LifeRules.parse(value);
+          break;
+        case "--preset":
+          preset = Preset.fromName(value);
+          break;
+        case "--seed":
+          seedFile = value;
+          break;
+        case "--generations":
+          generations = parseGenerations(value, option);
+          break;
+        case "--threads":
+          threads = parseNumbers(value, ",", 1, option)[0];
+          break;
+        case "--neighborhood":
+          neighborhood = Neighborhood.fromName(value);
+          break;
+        case "--engine":
+          engineType = EngineType.fromName(value);
+          break;
+        case "--random-seed":
+          rand = new Random(parseNumbers(value, ",", 1, option)[0]);
+          break;
+        case "--report":
+          reportInterval = parseNumbers(value, ",", 1, option)[0];
+          break;
+        case "--load":
+          loadFile = GridFile.read(Paths.get(value));
+          break;
+        case "--save":
+          saveFile = value;
+          break;
+        case "--checkpoint":
+          checkpointDirectory = value;
+          break;
+        case "--checkpoint-every":
+          checkpointGenerations = parseNumbers(value, ",", 1, option)[0];
+          break;
+        case "--checkpoint-seconds":
+          checkpointSeconds = parseNumbers(value, ",", 1, option)[0];
+          break;
+        case "--cycles":
+          if(!value.equals("report") && !value.equals("stop") && !value.equals("fast-forward"))
+          {
+            throw new IllegalArgumentException("--cycles must be report, stop or fast-forward");
+          }
+          cycleAction = value;
+          break;
+        case "--cycle-history":
+          cycleHistory = parseNumbers(value, ",", 1, option)[0];
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + option);
+      }
+    }
+  }
+
+  private static int[] parseNumbers(String value, String separator, int count, String option)
+  {
+    String[] parts = value.split(separator);
+
+    if(parts.length != count)
+    {
+      throw new IllegalArgumentException(option + " needs " + count + " numbers separated by '" + separator + "'");
+    }
+
+    int[] numbers = new int[count];
+
+    for(int n = 0; n < count; n++)
+    {
+      try
+      {
+        numbers[n] = Integer.parseInt(parts[n].trim());
+      }
+      catch(NumberFormatException e)
+      {
+        throw new IllegalArgumentException("Not a number for " + option + ": " + parts[n]);
+      }
+
+      if(numbers[n] < 0)
+      {
+        throw new IllegalArgumentException("Negative number for " + option + ": " + parts[n]);
+      }
+    }
+    return numbers;
+  }
+
+  private static long parseGenerations(String value, String option)
+  {
+    long generations;
+
+    try
+    {
+      generations = Long.parseLong(value.trim());
+    }
+    catch(NumberFormatException e)
+    {
+      throw new IllegalArgumentException("Not a number for " + option + ": " + value);
+    }
+
+    if(generations <= 0)
+    {
+      throw new IllegalArgumentException("Not a positive number for " + option + ": " + value);
+    }
+    return generations;
+  }
+
+  /**
+   * Seeds the engine, runs every generation and prints the statistics.
+   */
+  private void run() throws IOException
+  {
+    if(resume)
+    {
+      if(checkpointDirectory == null)
+      {
+        throw new IllegalArgumentException("--resume needs the --checkpoint directory to resume from");
+      }
+      GridFile checkpoint = Checkpointer.findLatest(Paths.get(checkpointDirectory));
+
+      if(checkpoint != null)  //Otherwise the directory holds no checkpoints, so the run starts from the beginning
+      {
+        loadFile = checkpoint;
+        generations = Math.max(generations - checkpoint.getGeneration(), 0);
+      }
+    }
+
+    if(loadFile != null)  //The snapshot replaces the size, the neighborhood and the starting pattern
+    {
+      width = loadFile.getWidth();
+      height = loadFile.getHeight();
+      depth = loadFile.getDepth();
+      neighborhood = loadFile.getNeighborhood();
+      toroidal |= loadFile.isToroidal();
+
+      if(rules == null)
+      {
+        rules = loadFile.getRules();
+      }
+    }
+    else if(seedFile == null)
+    {
+      depth = preset.getDepth(depth);
+      rules = preset.getRules(rules);
+    }
+
+    if(rules == null)
+    {
+      rules = new LifeRules(3, 3, 3, 2);
+    }
+
+    if(engineType == EngineType.BIT)  //The current and the next generation
+    {
+      System.out.println(new GridSize(width, height, depth).describeMemory(2));
+    }
+    if(threads > 1 && engineType != EngineType.BIT)
+    {
+      throw new IllegalArgumentException("Only the bit engine runs on more than one thread");
+    }
+    LifeEngine engine;
+
+    if(offHeap)
+    {
+      if(engineType != EngineType.BIT)
+      {
+        throw new IllegalArgumentException("Only the bit engine can store its grids off the heap");
+      }
+      int padding = neighborhood.getRadius();
+      BitGridEngine bitGridEngine = new BitGridEngine(new OffHeapGrid(width, height, depth, padding),
+          new OffHeapGrid(width, height, depth, padding), rules, neighborhood);
+      bitGridEngine.setParallelism(threads);
+      engine = bitGridEngine;
+    }
+    else
+    {
+      engine = engineType.create(width, height, depth, rules, neighborhood, threads);
+    }
+
+    if(toroidal)
+    {
+      if(!(engine instanceof BitGridEngine))
+      {
+        throw new IllegalArgumentException("Only the bit engine can wrap around, the other engines are unbounded");
+      }
+      ((BitGridEngine)engine).setToroidal(true);
+    }
+
+    Preset.CellSink sink = (i, j, k) ->
+    {
+      if(i >= 0 && i < width && j >= 0 && j < height && k >= 0 && k < depth)
+      {
+        engine.setAlive(i, j, k, true);
+      }
+    };
+
+    if(loadFile != null)
+    {
+      loadFile.restore(engine);
+    }
+    else if(seedFile != null)
+    {
+      readSeedFile(sink);
+    }
+    else
+    {
+      preset.seed(width, height, depth, rand, sink);
+    }
+
+    Checkpointer checkpointer = null;
+
+    if(checkpointDirectory != null)
+    {
+      if(checkpointSeconds < 0)
+      {
+        checkpointSeconds = checkpointGenerations > 0 ? 0 : 300;
+      }
+      checkpointer = new Checkpointer(Paths.get(checkpointDirectory), engine, checkpointGenerations, checkpointSeconds,
+          offHeap);
+      checkpointer.start();
+    }
+
+    CycleDetector cycleDetector = null;
+
+    if(cycleAction != null)
+    {
+      if(engineType == EngineType.SPARSE || engineType == EngineType.OCTREE)
+      {
+        throw new IllegalArgumentException("Cycles can only be detected by bounded engines, cells outside of the grid are not hashed");
+      }
+      cycleDetector = new CycleDetector(cycleHistory);
+      cycleDetector.update(engine);
+    }
+
+    BitGridEngine tileCheck = checkTiles ? createTileCheck(engine) : null;
+    GridStore[] checkedGrids = checkTiles ? new GridStore[]{new BitGrid(width, height, depth, neighborhood.getRadius()),
+        new BitGrid(width, height, depth, neighborhood.getRadius())} : null;
+    long cells = (long)width*height*depth;
+    long startPopulation = engine.getPopulation();
+    long minPopulation = startPopulation;
+    long maxPopulation = startPopulation;
+    double populationSum = 0;
+
+    System.out.println("Grid:        " + width + "x" + height + "x" + depth + " (" + cells + " cells)");
+    System.out.println("Rules:       " + rules + ", " + neighborhood.getName() + " neighborhood");
+    String start = seedFile != null ? seedFile : preset.getName();
+
+    if(loadFile != null)
+    {
+      start = loadFile.getPath() + ", generation " + loadFile.getGeneration();
+    }
+    System.out.println("Start:       " + start);
+    String fallback = engineType == EngineType.VECTOR && !EngineType.isVectorAvailable() ? " (not available, running dense)" : "";
+    System.out.println("Engine:      " + engineType.getName() + fallback + ", " + threads + " thread(s)" + (toroidal ? ", toroidal" : "")
+        + (offHeap ? ", off heap" : ""));
+    System.out.println("Seeded:      " + startPopulation + " cells");
+
+    ThreadMXBean allocationCounter = getAllocationCounter();
+    long allocated = 0;
+    long startTime = System.nanoTime();
+    long stepped = 0;
+
+    for(long g = 1; g <= generations; g++)
+    {
+      long allocatedBefore = allocationCounter != null ? allocationCounter.getCurrentThreadAllocatedBytes() : 0;
+      engine.step();
+      stepped++;
+      long population = engine.getPopulation();
+      minPopulation = Math.min(minPopulation, population);
+      maxPopulation = Math.max(maxPopulation, population);
+      populationSum += population;
+
+      if(checkpointer != null)
+      {
+        checkpointer.afterStep(engine);
+      }
+      boolean cycleFound = cycleDetector != null && cycleDetector.update(engine);
+
+      if(allocationCounter != null)   //Printing the report and the cycle allocates, so it is not counted
+      {
+        allocated += allocationCounter.getCurrentThreadAllocatedBytes() - allocatedBefore;
+      }
+
+      if(tileCheck != null)  //Not timed with the run, but it slows the run down
+      {
+        tileCheck.step();
+        compareTiles(engine, tileCheck, checkedGrids);
+      }
+
+      if(reportInterval > 0 && g%reportInterval == 0)
+      {
+        System.out.println("Generation " + g + ": " + population);
+      }
+
+      if(cycleFound)
+      {
+        System.out.println("Cycle:       " + cycleDetector.describe() + ", found at gen " + engine.getGeneration());
+
+        if(cycleAction.equals("stop"))
+        {
+          break;
+        }
+
+        if(cycleAction.equals("fast-forward"))  //Whole periods leave the grid as it is, only the rest is stepped
+        {
+          long skipped = (generations - g)/cycleDetector.getPeriod()*cycleDetector.getPeriod();
+          fastForward(engine, skipped);
+          g += skipped;
+
+          if(tileCheck != null)
+          {
+            tileCheck.restore(checkedGrids[1], engine.getGeneration());
+          }
+        }
+      }
+    }
+
+    long elapsed = System.nanoTime() - startTime;
+    long endPopulation = engine.getPopulation();
+    double seconds = elapsed/1e9;
+
+    System.out.println("Generations: " + engine.getGeneration());
+    System.out.printf("Time:        %.3f s%n", seconds);
+
+    if(stepped > 0)   //Generations skipped by a fast-forward are not counted
+    {
+      System.out.printf("Speed:       %.1f generations/s, %.3f ns/cell/generation%n",
+          stepped/seconds, (double)elapsed/stepped/cells);
+      System.out.printf("Population:  %d at the end, %d min, %d max, %.1f mean%n",
+          endPopulation, minPopulation, maxPopulation, populationSum/stepped);
+
+      if(allocationCounter != null)
+      {
+        String counted = threads > 1 ? " on the calling thread, the " + (threads - 1) + " pool thread(s) are not counted"
+            : "";  //Only the calling thread can be measured, so use --threads 1 to see every allocation
+        System.out.printf("Allocated:   %.1f bytes/generation while stepping%s%n", (double)allocated/stepped, counted);
+      }
+    }
+
+    if(tileCheck != null)
+    {
+      System.out.println("Tiles:       every generation matched evaluating every tile");
+      tileCheck.dispose();
+    }
+
+    if(engineType != EngineType.SPARSE && engineType != EngineType.OCTREE)
+    {
+      System.out.printf("Density:     %.4f%%%n", 100.0*endPopulation/cells);
+    }
+    else  //Cells outside of the grid keep living in an unbounded universe
+    {
+      System.out.println("Density:     n/a, the universe is unbounded");
+    }
+
+    if(saveFile != null)
+    {
+      GridFile.save(Paths.get(saveFile), engine);
+      GridFile saved = GridFile.read(Paths.get(saveFile));  //Read back, so a snapshot that cannot be loaded fails the run
+      saved.verify();
+
+      if(saved.isToroidal() != toroidal || saved.getGeneration() != engine.getGeneration())
+      {
+        throw new IOException(saveFile + " does not read back as it was saved");
+      }
+      System.out.println("Saved:       " + saveFile);
+    }
+
+    if(checkpointer != null)  //A last checkpoint, so resuming a finished run does nothing
+    {
+      checkpointer.checkpoint(engine);
+      checkpointer.close();
+      System.out.println("Checkpoint:  generation " + checkpointer.getLastSavedGeneration() + " in " + checkpointDirectory
+          + (checkpointer.getSkipped() > 0 ? ", " + checkpointer.getSkipped() + " skipped while writing" : ""));
+    }
+    engine.dispose();
+  }
+
+  /**
+   * Returns the bean counting the bytes allocated by each thread, or null if the JVM does not count them.
+   */
+  private static ThreadMXBean getAllocationCounter()
+  {
+    if(!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean))
+    {
+      return null;
+    }
+
+    ThreadMXBean bean = (ThreadMXBean)ManagementFactory.getThreadMXBean();
+
+    if(!bean.isThreadAllocatedMemorySupported())
+    {
+      return null;
+    }
+    bean.setThreadAllocatedMemoryEnabled(true);
+    return bean;
+  }
+
+  /**
+   * Returns a bit engine in the same state as the engine of the run, that evaluates every tile in every generation.
+   */
+  private BitGridEngine createTileCheck(LifeEngine engine)
+  {
+    if(!(engine instanceof BitGridEngine))
+    {
+      throw new IllegalArgumentException("--check-tiles only checks the bit engine, the other engines have no tiles");
+    }
+
+    BitGridEngine tileCheck = new BitGridEngine(width, height, depth, rules, neighborhood);
+    tileCheck.setToroidal(toroidal);
+    tileCheck.setTileSkipping(false);
+    BitGrid grid = new BitGrid(width, height, depth, neighborhood.getRadius());
+    engine.copyTo(grid);
+    tileCheck.restore(grid, engine.getGeneration());
+    return tileCheck;
+  }
+
+  /**
+   * Compares the grid of the run with the grid of the engine that evaluates every tile.
+   * @param engine  The engine of the run
+   * @param tileCheck The engine evaluating every tile
+   * @param grids Two grids to copy the engines into. The second one holds the grid of the run afterwards.
+   * @throws IllegalStateException  If the grids differ
+   */
+  private static void compareTiles(LifeEngine engine, BitGridEngine tileCheck, GridStore[] grids)
+  {
+    tileCheck.copyTo(grids[0]);
+    engine.copyTo(grids[1]);
+    int words = grids[0].getRowCount()*grids[0].getWordsPerRow();
+
+    for(int index = 0; index < words; index++)
+    {
+      if(grids[0].getWord(index) != grids[1].getWord(index))
+      {
+        throw new IllegalStateException("Generation " + engine.getGeneration() + " differs from evaluating every tile, in word "
+            + index);
+      }
+    }
+  }
+
+  /**
+   * Moves an engine forward by a number of generations that leaves its grid as it is.
+   */
+  private void fastForward(LifeEngine engine, long generations)
+  {
+    if(generations == 0)
+    {
+      return;
+    }
+
+    int padding = neighborhood.getRadius();
+    GridStore grid = offHeap ? new OffHeapGrid(width, height, depth, padding) : new BitGrid(width, height, depth, padding);
+    engine.copyTo(grid);
+    engine.restore(grid, engine.getGeneration() + generations);
+    grid.dispose();
+    System.out.println("Skipped:     " + generations + " generations to gen " + engine.getGeneration());
+  }
+
+  /**
+   * Reads living cells from the seed file.
+   * @param sink  Receives every living cell
+   */
+  private void readSeedFile(Preset.CellSink sink) throws IOException
+  {
+    try(BufferedReader reader = Files.newBufferedReader(Paths.get(seedFile), StandardCharsets.UTF_8))
+    {
+      String line;
+      int lineNumber = 0;
+
+      while((line = reader.readLine()) != null)
+      {
+        lineNumber++;
+        int comment = line.indexOf('#');
+
+        if(comment >= 0)
+        {
+          line = line.substring(0, comment);
+        }
+        line = line.trim();
+
+        if(line.isEmpty())
+        {
+          continue;
+        }
+
+        String[] parts = line.split("[\\s,]+");
+
+        if(parts.length != 3)
+        {
+          throw new IllegalArgumentException(seedFile + ":" + lineNumber + ": expected 3 coordinates");
+        }
+
+        try
+        {
+          sink.addLiveCell(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        }
+        catch(NumberFormatException e)
+        {
+          throw new IllegalArgumentException(seedFile + ":" + lineNumber + ": not a number");
+        }
+      }
+    }
+  }
+}
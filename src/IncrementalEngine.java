@@ -0,0 +1,285 @@
+import java.util.Arrays;
+
+/**
+ * Public class IncrementalEngine
+ * A LifeEngine that keeps the number of living neighbors of every cell in a byte array and only updates it when a cell
+ * is born or dies. A cell can only change when its own state or its neighbor count changed, so each generation only
+ * evaluates the cells that changed in the last generation and their neighbors, and a generation costs time in
+ * proportion to the number of cells that change instead of the size of the grid.
+ * Cells are stored one byte per cell with a dead border as wide as the radius of the Neighborhood, in rows along the
+ * x axis indexed z then y like a GridStore.
+ */
+public class IncrementalEngine implements LifeEngine
+{
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int rowLength;
+  private final int planeLength;
+  private final int padding;
+  private final Neighborhood neighborhood;
+  private final byte[] cells;   //1 for a living cell
+  private final byte[] neighborCounts;
+  private final boolean[] queued;   //Cells already waiting to be evaluated. Always true for the border.
+  private final int[] neighborOffsets;
+  private LifeRules rules;
+  private byte[] ruleTable;
+  private int[] candidates = new int[1024];   //Cells evaluated in the next generation
+  private int candidateCount;
+  private int[] changes = new int[1024];
+  private long population;
+  private long generation;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   */
+  public IncrementalEngine(int width, int height, int depth, LifeRules rules)
+  {
+    this(width, height, depth, rules, Neighborhood.MOORE);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rules Specifies the rules used to advance the grid
+   * @param neighborhood  Specifies the cells counted as neighbors
+   */
+  public IncrementalEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.neighborhood = neighborhood;
+    padding = neighborhood.getRadius();
+    rowLength = width + 2*padding;
+    planeLength = rowLength*(depth + 2*padding);
+    long cellCount = (long)planeLength*(height + 2*padding);
+
+    if(cellCount > Integer.MAX_VALUE - 8)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid does not fit in a single array");
+    }
+
+    cells = new byte[(int)cellCount];
+    neighborCounts = new byte[cells.length];
+    queued = new boolean[cells.length];
+    Arrays.fill(queued, true);
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        Arrays.fill(queued, index(0, j, k), index(width, j, k), false);
+      }
+    }
+
+    int[][] offsets = neighborhood.getOffsets();
+    neighborOffsets = new int[offsets.length];
+
+    for(int n = 0; n < offsets.length; n++)
+    {
+      neighborOffsets[n] = offsets[n][1]*planeLength + offsets[n][2]*rowLength + offsets[n][0];
+    }
+    setRules(rules);
+  }
+
+  private int index(int i, int j, int k)
+  {
+    return (j + padding)*planeLength + (k + padding)*rowLength + i + padding;
+  }
+
+  /**
+   * Changes the rules used to advance the grid. Every cell is evaluated in the next generation.
+   * @param rules Specifies the new rules
+   */
+  public void setRules(LifeRules rules)
+  {
+    this.rules = rules;
+    ruleTable = rules.toLookupTable();
+    queueAllCells();
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  /**
+   * Queues every cell in the grid, for the first generation and after the rules changed.
+   */
+  private void queueAllCells()
+  {
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        for(int i = 0; i < width; i++) //For every x
+        {
+          queue(index(i, j, k));
+        }
+      }
+    }
+  }
+
+  private void queue(int index)
+  {
+    if(!queued[index])
+    {
+      queued[index] = true;
+
+      if(candidateCount == candidates.length)
+      {
+        candidates = Arrays.copyOf(candidates, candidates.length*2);
+      }
+      candidates[candidateCount++] = index;
+    }
+  }
+
+  /**
+   * Flips a cell, updates the neighbor counts around it and queues it along with its neighbors.
+   */
+  private void flip(int index)
+  {
+    int delta = cells[index] == 0 ? 1 : -1;
+    cells[index] = (byte)(cells[index] + delta);
+    population += delta;
+    queue(index);
+
+    for(int n = 0; n < neighborOffsets.length; n++)
+    {
+      int neighbor = index + neighborOffsets[n];
+      neighborCounts[neighbor] = (byte)(neighborCounts[neighbor] + delta);
+      queue(neighbor);
+    }
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    return cells[index(i, j, k)] != 0;
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    int index = index(i, j, k);
+
+    if((cells[index] != 0) != state)
+    {
+      flip(index);
+    }
+  }
+
+  public void clear()
+  {
+    Arrays.fill(cells, (byte)0);
+    Arrays.fill(neighborCounts, (byte)0);
+
+    for(int c = 0; c < candidateCount; c++)
+    {
+      queued[candidates[c]] = false;
+    }
+    candidateCount = 0;
+    population = 0;
+    generation = 0;
+    queueAllCells();
+  }
+
+  /**
+   * Returns the number of cells that will be evaluated in the next generation.
+   * @return int queued cells
+   */
+  public int getQueuedCellCount()
+  {
+    return candidateCount;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return population;
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.clear();
+
+    for(int j = 0; j < height; j++) //For every z
+    {
+      for(int k = 0; k < depth; k++) //For every y
+      {
+        int row = index(0, j, k);
+
+        for(int i = 0; i < width; i++) //For every x
+        {
+          if(cells[row + i] != 0)
+          {
+            target.setAlive(i, j, k, true);
+          }
+        }
+      }
+    }
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    clear();
+    source.forEachLiveCell((i, j, k) -> setAlive(i, j, k, true));
+    this.generation = generation;
+  }
+
+  public void step()
+  {
+    if(changes.length < candidates.length)
+    {
+      changes = new int[candidates.length];
+    }
+
+    int changeCount = 0;
+
+    for(int c = 0; c < candidateCount; c++) //Decide every change before any cell is flipped
+    {
+      int index = candidates[c];
+      queued[index] = false;
+      int next = ruleTable[cells[index]*LifeRules.TABLE_STRIDE + neighborCounts[index]];
+      changes[changeCount] = index;   //Kept only if the cell changes
+      changeCount += next ^ cells[index];
+    }
+
+    candidateCount = 0;
+
+    for(int c = 0; c < changeCount; c++)
+    {
+      flip(changes[c]);
+    }
+    generation++;
+  }
+}
@@ -0,0 +1,68 @@
+/**
+ * Public interface LifeEngine
+ * Holds the state of a grid and advances it one generation at a time.
+ * Cell coordinates start at 0, i is x, j is z and k is y.
+ */
+public interface LifeEngine
+{
+  int getWidth();
+
+  int getHeight();
+
+  int getDepth();
+
+  LifeRules getRules();
+
+  boolean isAlive(int i, int j, int k);
+
+  void setAlive(int i, int j, int k, boolean state);
+
+  /**
+   * Kills every cell and resets the generation count.
+   */
+  void clear();
+
+  /**
+   * Advances the grid by one generation.
+   */
+  void step();
+
+  /**
+   * Returns the number of generations since the grid was seeded.
+   * @return long generation
+   */
+  long getGeneration();
+
+  /**
+   * Copies the current generation into a GridStore with the same dimensions.
+   * @param target The GridStore to copy into
+   */
+  void copyTo(GridStore target);
+
+  /**
+   * Replaces every cell with the cells of a GridStore with the same dimensions, and sets the generation count, e.g. to
+   * continue from a saved grid.
+   * @param source  The GridStore to copy from
+   * @param generation  The generation the GridStore holds
+   */
+  void restore(GridStore source, long generation);
+
+  /**
+   * Returns the cells counted as neighbors.
+   * @return Neighborhood neighborhood
+   */
+  Neighborhood getNeighborhood();
+
+  /**
+   * Returns the number of living cells.
+   * @return long population
+   */
+  long getPopulation();
+
+  /**
+   * Frees the threads and the memory outside of the heap that the engine holds. The engine cannot be used afterwards.
+   */
+  default void dispose()
+  {
+  }
+}
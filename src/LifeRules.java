@@ -0,0 +1,311 @@
+import java.util.BitSet;
+
+/**
+ * Public class LifeRules
+ * Holds the birth and survival rules for Conway's Game of Life in 3D, for neighbor counts up to the size of the
+ * largest Neighborhood.
+ * The rules are a set of neighbor counts that give birth to a dead cell and a set of neighbor counts that keep a living
+ * cell alive, compiled into a lookup table indexed by state and neighbor count.
+ * Rules built from R1 - R4 are ranges: a dead cell is born if it has between R1 and R2 neighbors, and a living cell
+ * dies if it has more than R3 or fewer than R4 neighbors.
+ */
+public class LifeRules
+{
+  public static final int MAX_NEIGHBORS = 124;  //Neighbors in the largest Neighborhood
+  public static final int TABLE_STRIDE = MAX_NEIGHBORS + 1;   //Entries for a single state in the lookup table
+  private final BitSet birthCounts;   //Bit n is set if a dead cell with n neighbors is born
+  private final BitSet survivalCounts;  //Bit n is set if a living cell with n neighbors survives
+  private final int R1;
+  private final int R2;
+  private final int R3;
+  private final int R4;
+
+  /**
+   * Class Constructor
+   * @param R1  Specifies the value of Rule: 1 for Conway's Game of Life
+   * @param R2  Specifies the value of Rule: 2 for Conway's Game of Life
+   * @param R3  Specifies the value of Rule: 3 for Conway's Game of Life
+   * @param R4  Specifies the value of Rule: 4 for Conway's Game of Life
+   */
+  public LifeRules(int R1, int R2, int R3, int R4)
+  {
+    this(rangeSet(R1, R2), rangeSet(R4, R3), R1, R2, R3, R4);
+  }
+
+  private LifeRules(BitSet birthCounts, BitSet survivalCounts, int R1, int R2, int R3, int R4)
+  {
+    this.birthCounts = birthCounts;
+    this.survivalCounts = survivalCounts;
+    this.R1 = R1;
+    this.R2 = R2;
+    this.R3 = R3;
+    this.R4 = R4;
+  }
+
+  /**
+   * Creates rules from the sets of neighbor counts that give birth and survive.
+   * @param birthCounts Bit n is set if a dead cell with n neighbors is born
+   * @param survivalCounts  Bit n is set if a living cell with n neighbors survives
+   * @return LifeRules rules
+   */
+  public static LifeRules fromSets(BitSet birthCounts, BitSet survivalCounts)
+  {
+    if(birthCounts.length() > TABLE_STRIDE || survivalCounts.length() > TABLE_STRIDE)
+    {
+      throw new IllegalArgumentException("Neighbor counts must be between 0 and " + MAX_NEIGHBORS);
+    }
+    return new LifeRules((BitSet)birthCounts.clone(), (BitSet)survivalCounts.clone(), -1, -1, -1, -1);
+  }
+
+  /**
+   * Reads rules written as R1/R2/R3/R4 or R1,R2,R3,R4, or in B/S notation such as B5/S45.
+   * In B/S notation a list of plain digits holds one neighbor count per digit. A list with commas or dashes holds
+   * numbers and ranges instead, e.g. B5,6/S4-5,10.
+   * @param rules The rules to read
+   * @return LifeRules rules
+   */
+  public static LifeRules parse(String rules)
+  {
+    String text = rules.trim().toUpperCase();
+
+    if(text.startsWith("B") || text.startsWith("S"))
+    {
+      BitSet birthCounts = new BitSet(TABLE_STRIDE);
+      BitSet survivalCounts = new BitSet(TABLE_STRIDE);
+
+      for(String part : text.split("/"))
+      {
+        part = part.trim();
+
+        if(part.startsWith("B"))
+        {
+          parseCounts(part.substring(1), rules, birthCounts);
+        }
+        else if(part.startsWith("S"))
+        {
+          parseCounts(part.substring(1), rules, survivalCounts);
+        }
+        else
+        {
+          throw new IllegalArgumentException("Rules in B/S notation look like B5/S45: " + rules);
+        }
+      }
+      return new LifeRules(birthCounts, survivalCounts, -1, -1, -1, -1);
+    }
+
+    String[] parts = text.split("[/,]");
+
+    if(parts.length != 4)
+    {
+      throw new IllegalArgumentException("Rules are written as R1/R2/R3/R4 or in B/S notation: " + rules);
+    }
+
+    int[] values = new int[4];
+
+    for(int r = 0; r < 4; r++)
+    {
+      values[r] = parseCount(parts[r], rules);
+    }
+    return new LifeRules(values[0], values[1], values[2], values[3]);
+  }
+
+  private static void parseCounts(String list, String rules, BitSet counts)
+  {
+    if(list.indexOf(',') < 0 && list.indexOf('-') < 0)   //One neighbor count per digit
+    {
+      for(int c = 0; c < list.length(); c++)
+      {
+        counts.set(parseCount(list.substring(c, c + 1), rules));
+      }
+      return;
+    }
+
+    for(String item : list.split(","))
+    {
+      if(item.trim().isEmpty())
+      {
+        continue;
+      }
+
+      int dash = item.indexOf('-');
+      int from = parseCount(dash < 0 ? item : item.substring(0, dash), rules);
+      int to = dash < 0 ? from : parseCount(item.substring(dash + 1), rules);
+      counts.or(rangeSet(from, to));
+    }
+  }
+
+  private static int parseCount(String count, String rules)
+  {
+    try
+    {
+      int neighbors = Integer.parseInt(count.trim());
+
+      if(neighbors >= 0 && neighbors <= MAX_NEIGHBORS)
+      {
+        return neighbors;
+      }
+    }
+    catch(NumberFormatException e)
+    {
+      throw new IllegalArgumentException("Not a neighbor count in " + rules + ": " + count);
+    }
+    throw new IllegalArgumentException("Neighbor counts must be between 0 and " + MAX_NEIGHBORS + " in " + rules);
+  }
+
+  /**
+   * Returns a set with the counts from one count to another, or an empty set if the range is empty.
+   */
+  private static BitSet rangeSet(int from, int to)
+  {
+    BitSet counts = new BitSet(TABLE_STRIDE);
+
+    if(from <= to)
+    {
+      counts.set(Math.max(from, 0), Math.min(to, MAX_NEIGHBORS) + 1);
+    }
+    return counts;
+  }
+
+  /**
+   * Returns a boolean value indicating if the rules were built from R1 - R4.
+   * @return boolean range
+   */
+  public boolean isRange()
+  {
+    return R1 >= 0;
+  }
+
+  public int getR1()
+  {
+    checkRange();
+    return R1;
+  }
+
+  public int getR2()
+  {
+    checkRange();
+    return R2;
+  }
+
+  public int getR3()
+  {
+    checkRange();
+    return R3;
+  }
+
+  public int getR4()
+  {
+    checkRange();
+    return R4;
+  }
+
+  private void checkRange()
+  {
+    if(!isRange())
+    {
+      throw new IllegalStateException("The rules " + this + " cannot be written as R1 - R4");
+    }
+  }
+
+  /**
+   * Returns a boolean value indicating if a dead cell with this many neighbors is born.
+   * @param neighbors The number of living neighbors
+   * @return boolean born
+   */
+  public boolean isBorn(int neighbors)
+  {
+    return neighbors >= 0 && birthCounts.get(neighbors);
+  }
+
+  /**
+   * Returns a boolean value indicating if a living cell with this many neighbors stays alive.
+   * @param neighbors The number of living neighbors
+   * @return boolean survives
+   */
+  public boolean survives(int neighbors)
+  {
+    return neighbors >= 0 && survivalCounts.get(neighbors);
+  }
+
+  /**
+   * Returns the state of a cell in the next generation.
+   * @param alive The current state of the cell
+   * @param neighbors The number of living neighbors
+   * @return boolean alive in the next generation
+   */
+  public boolean nextState(boolean alive, int neighbors)
+  {
+    return alive ? survives(neighbors) : isBorn(neighbors);
+  }
+
+  /**
+   * Returns the rules as a lookup table of 2 by TABLE_STRIDE entries. The entry at state*TABLE_STRIDE + neighbors is
+   * 1 if a cell in that state (0 dead, 1 alive) with that many neighbors is alive in the next generation, and 0 if not.
+   * @return byte[] lookup table
+   */
+  public byte[] toLookupTable()
+  {
+    byte[] table = new byte[2*TABLE_STRIDE];
+
+    for(int neighbors = 0; neighbors <= MAX_NEIGHBORS; neighbors++)
+    {
+      table[neighbors] = (byte)(birthCounts.get(neighbors) ? 1 : 0);
+      table[TABLE_STRIDE + neighbors] = (byte)(survivalCounts.get(neighbors) ? 1 : 0);
+    }
+    return table;
+  }
+
+  @Override
+  public boolean equals(Object other)
+  {
+    return other instanceof LifeRules && ((LifeRules)other).birthCounts.equals(birthCounts)
+        && ((LifeRules)other).survivalCounts.equals(survivalCounts);
+  }
+
+  @Override
+  public int hashCode()
+  {
+    return birthCounts.hashCode()*31 + survivalCounts.hashCode();
+  }
+
+  /**
+   * Returns the rules in B/S notation, e.g. B3/S23, with commas and ranges if a count is larger than 9.
+   */
+  @Override
+  public String toString()
+  {
+    return "B" + formatCounts(birthCounts) + "/S" + formatCounts(survivalCounts);
+  }
+
+  private static String formatCounts(BitSet set)
+  {
+    StringBuilder counts = new StringBuilder();
+
+    if(set.length() <= 10)  //Every count is a single digit
+    {
+      for(int neighbors = set.nextSetBit(0); neighbors >= 0; neighbors = set.nextSetBit(neighbors + 1))
+      {
+        counts.append(neighbors);
+      }
+      return counts.toString();
+    }
+
+    for(int neighbors = set.nextSetBit(0); neighbors >= 0; neighbors = set.nextSetBit(neighbors + 1))
+    {
+      int last = set.nextClearBit(neighbors) - 1;
+
+      if(counts.length() > 0)
+      {
+        counts.append(',');
+      }
+      counts.append(neighbors);
+
+      if(last > neighbors)
+      {
+        counts.append('-').append(last);
+      }
+      neighbors = last;
+    }
+    return counts.toString();
+  }
+}
@@ -0,0 +1,148 @@
+import java.util.Arrays;
+
+/**
+ * Public class LongCountMap
+ * An open addressing hash map from non-negative long keys to int counts, used to count the neighbors of sparse cells.
+ */
+public class LongCountMap
+{
+  private static final int MIN_CAPACITY = 16;
+  private static final int SHRINK_LOAD = 8;  //Shrinks after SHRINK_CLEARS clears in a row while less than 1/8 full
+  private static final int SHRINK_CLEARS = 16;
+  private long[] keys;
+  private int[] counts;
+  private int size;
+  private int mask;
+  private int sparseClears;   //Clears in a row that found the map less than 1/SHRINK_LOAD full
+  private int sparseMaxSize;  //Most keys the map held at any of those clears
+
+  /**
+   * Class Constructor
+   * @param expectedSize  Number of keys the map should hold without growing
+   */
+  public LongCountMap(int expectedSize)
+  {
+    allocate(capacityFor(expectedSize));
+  }
+
+  private static int capacityFor(int expectedSize)
+  {
+    int capacity = MIN_CAPACITY;
+
+    while(capacity < expectedSize*2L && capacity < (1 << 30)) //Keep the map at most half full
+    {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new long[capacity];
+    counts = new int[capacity];
+    Arrays.fill(keys, LongHashSet.EMPTY);
+    mask = capacity - 1;
+    size = 0;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Returns the key stored in a slot, or LongHashSet.EMPTY if the slot is unused.
+   * @param slot  Index of the slot, from 0 to capacity() - 1
+   * @return long key
+   */
+  public long keyAt(int slot)
+  {
+    return keys[slot];
+  }
+
+  public int countAt(int slot)
+  {
+    return counts[slot];
+  }
+
+  /**
+   * Adds to the count of a key, starting from 0 if the key is not in the map yet.
+   * @param key The key to count
+   * @param amount  The amount to add
+   */
+  public void add(long key, int amount)
+  {
+    int slot = LongHashSet.hash(key) & mask;
+
+    while(keys[slot] != LongHashSet.EMPTY)
+    {
+      if(keys[slot] == key)
+      {
+        counts[slot] += amount;
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    counts[slot] = amount;
+    size++;
+
+    if(size*2 > keys.length)
+    {
+      grow();
+    }
+  }
+
+  /**
+   * Removes every key. After SHRINK_CLEARS clears in a row that found the map less than 1/SHRINK_LOAD full, it shrinks
+   * to the capacity the most keys of those clears need, so iterating over it after a burst costs time in proportion to
+   * the keys it held lately rather than the most it ever held. A single busy clear starts the count over, so a
+   * population that swings up and down keeps its capacity.
+   */
+  public void clear()
+  {
+    if(keys.length > MIN_CAPACITY && (long)size*SHRINK_LOAD < keys.length)
+    {
+      sparseClears++;
+      sparseMaxSize = Math.max(sparseMaxSize, size);
+    }
+    else
+    {
+      sparseClears = 0;
+      sparseMaxSize = 0;
+    }
+
+    if(sparseClears >= SHRINK_CLEARS)
+    {
+      allocate(capacityFor(sparseMaxSize));
+      sparseClears = 0;
+      sparseMaxSize = 0;
+    }
+    else if(size > 0)
+    {
+      Arrays.fill(keys, LongHashSet.EMPTY);
+      size = 0;
+    }
+  }
+
+  private void grow()
+  {
+    long[] oldKeys = keys;
+    int[] oldCounts = counts;
+    allocate(oldKeys.length*2);
+
+    for(int slot = 0; slot < oldKeys.length; slot++)
+    {
+      if(oldKeys[slot] != LongHashSet.EMPTY)
+      {
+        add(oldKeys[slot], oldCounts[slot]);
+      }
+    }
+  }
+}
@@ -0,0 +1,216 @@
+import java.util.Arrays;
+
+/**
+ * Public class LongHashSet
+ * An open addressing hash set of non-negative long keys. Keys are stored in a primitive array with linear probing,
+ * so adding, finding and iterating keys never allocates unless the set has to grow.
+ */
+public class LongHashSet
+{
+  public static final long EMPTY = -1L;   //Marks an unused slot. Keys must not be negative.
+  private static final int MIN_CAPACITY = 16;
+  private static final int SHRINK_LOAD = 8;  //Shrinks after SHRINK_CLEARS clears in a row while less than 1/8 full
+  private static final int SHRINK_CLEARS = 16;
+  private long[] keys;
+  private int size;
+  private int mask;
+  private int sparseClears;   //Clears in a row that found the set less than 1/SHRINK_LOAD full
+  private int sparseMaxSize;  //Most keys the set held at any of those clears
+
+  /**
+   * Class Constructor
+   * @param expectedSize  Number of keys the set should hold without growing
+   */
+  public LongHashSet(int expectedSize)
+  {
+    allocate(capacityFor(expectedSize));
+  }
+
+  private static int capacityFor(int expectedSize)
+  {
+    int capacity = MIN_CAPACITY;
+
+    while(capacity < expectedSize*2L && capacity < (1 << 30)) //Keep the set at most half full
+    {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  private void allocate(int capacity)
+  {
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    mask = capacity - 1;
+    size = 0;
+  }
+
+  /**
+   * Spreads the bits of a key so that nearby coordinates do not land in nearby slots.
+   */
+  static int hash(long key)
+  {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int)key;
+  }
+
+  public int size()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the number of slots in the set, used together with keyAt() to iterate over the keys.
+   * @return int capacity
+   */
+  public int capacity()
+  {
+    return keys.length;
+  }
+
+  /**
+   * Returns the key stored in a slot, or EMPTY if the slot is unused.
+   * @param slot  Index of the slot, from 0 to capacity() - 1
+   * @return long key
+   */
+  public long keyAt(int slot)
+  {
+    return keys[slot];
+  }
+
+  public boolean contains(long key)
+  {
+    int slot = hash(key) & mask;
+
+    while(keys[slot] != EMPTY)
+    {
+      if(keys[slot] == key)
+      {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Adds a key to the set.
+   * @param key The key to add
+   * @return boolean true if the key was not already in the set
+   */
+  public boolean add(long key)
+  {
+    if(key < 0)
+    {
+      throw new IllegalArgumentException("Keys must not be negative");
+    }
+
+    int slot = hash(key) & mask;
+
+    while(keys[slot] != EMPTY)
+    {
+      if(keys[slot] == key)
+      {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[slot] = key;
+    size++;
+
+    if(size*2 > keys.length)
+    {
+      grow();
+    }
+    return true;
+  }
+
+  /**
+   * Removes a key from the set. Keys after it in the same probe sequence are shifted back so no tombstones are left.
+   * @param key The key to remove
+   * @return boolean true if the key was in the set
+   */
+  public boolean remove(long key)
+  {
+    int slot = hash(key) & mask;
+
+    while(keys[slot] != key)
+    {
+      if(keys[slot] == EMPTY)
+      {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    int gap = slot;
+    slot = (slot + 1) & mask;
+
+    while(keys[slot] != EMPTY)
+    {
+      int home = hash(keys[slot]) & mask;
+
+      if(((slot - home) & mask) >= ((slot - gap) & mask))  //The key can move back into the gap
+      {
+        keys[gap] = keys[slot];
+        gap = slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    keys[gap] = EMPTY;
+    size--;
+    return true;
+  }
+
+  /**
+   * Removes every key. After SHRINK_CLEARS clears in a row that found the set less than 1/SHRINK_LOAD full, it shrinks
+   * to the capacity the most keys of those clears need, so iterating over it after a burst costs time in proportion to
+   * the keys it held lately rather than the most it ever held. A single busy clear starts the count over, so a
+   * population that swings up and down keeps its capacity.
+   */
+  public void clear()
+  {
+    if(keys.length > MIN_CAPACITY && (long)size*SHRINK_LOAD < keys.length)
+    {
+      sparseClears++;
+      sparseMaxSize = Math.max(sparseMaxSize, size);
+    }
+    else
+    {
+      sparseClears = 0;
+      sparseMaxSize = 0;
+    }
+
+    if(sparseClears >= SHRINK_CLEARS)
+    {
+      allocate(capacityFor(sparseMaxSize));
+      sparseClears = 0;
+      sparseMaxSize = 0;
+    }
+    else if(size > 0)
+    {
+      Arrays.fill(keys, EMPTY);
+      size = 0;
+    }
+  }
+
+  private void grow()
+  {
+    long[] oldKeys = keys;
+    allocate(oldKeys.length*2);
+
+    for(int slot = 0; slot < oldKeys.length; slot++)
+    {
+      if(oldKeys[slot] != EMPTY)
+      {
+        add(oldKeys[slot]);
+      }
+    }
+  }
+}
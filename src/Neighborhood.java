@@ -0,0 +1,138 @@
+/**
+ * Public enum Neighborhood
+ * The cells around a cell that count as its neighbors.
+ * Every neighborhood is symmetric along each axis, and the neighbors in a single row along the x axis are always a run
+ * of cells centered on the row, so a neighbor count can be summed along x first and then over the rows.
+ */
+public enum Neighborhood
+{
+  VON_NEUMANN("von-neumann", 1, 6),   //The 6 cells sharing a face
+  EDGES("18", 1, 18),   //The 18 cells sharing a face or an edge
+  MOORE("moore", 1, 26),  //The 26 cells sharing a face, an edge or a corner
+  MOORE_RADIUS_2("radius-2", 2, 124);   //The 124 cells in the 5x5x5 cube around the cell
+
+  private final String name;
+  private final int radius;
+  private final int size;
+
+  Neighborhood(String name, int radius, int size)
+  {
+    this.name = name;
+    this.radius = radius;
+    this.size = size;
+  }
+
+  public String getName()
+  {
+    return name;
+  }
+
+  /**
+   * Returns the largest distance of a neighbor along any axis.
+   * @return int radius
+   */
+  public int getRadius()
+  {
+    return radius;
+  }
+
+  /**
+   * Returns the number of neighbors of a cell.
+   * @return int size
+   */
+  public int getSize()
+  {
+    return size;
+  }
+
+  /**
+   * Returns the neighborhood with a command line name, e.g. von-neumann.
+   * @param name  The name of the neighborhood
+   * @return Neighborhood neighborhood
+   */
+  public static Neighborhood fromName(String name)
+  {
+    for(Neighborhood neighborhood : values())
+    {
+      if(neighborhood.name.equalsIgnoreCase(name) || String.valueOf(neighborhood.size).equals(name))
+      {
+        return neighborhood;
+      }
+    }
+    throw new IllegalArgumentException("Unknown neighborhood: " + name);
+  }
+
+  /**
+   * Returns a boolean value indicating if the cell at this offset is a neighbor. The cell itself is not.
+   * @param di  Offset along the x axis
+   * @param dj  Offset along the z axis
+   * @param dk  Offset along the y axis
+   * @return boolean neighbor
+   */
+  public boolean contains(int di, int dj, int dk)
+  {
+    int distance = Math.abs(di) + Math.abs(dj) + Math.abs(dk);
+    int reach = Math.max(Math.abs(di), Math.max(Math.abs(dj), Math.abs(dk)));
+
+    if(distance == 0 || reach > radius)
+    {
+      return false;
+    }
+
+    switch(this)
+    {
+      case VON_NEUMANN:
+        return distance <= 1;
+      case EDGES:
+        return distance <= 2;
+      default:
+        return true;
+    }
+  }
+
+  /**
+   * Returns how far the neighbors reach along the x axis in the row at (dj, dk), or -1 if no cell in the row is a
+   * neighbor. The cell itself is counted as part of its own row.
+   * @param dj  Offset of the row along the z axis
+   * @param dk  Offset of the row along the y axis
+   * @return int reach
+   */
+  public int getRowReach(int dj, int dk)
+  {
+    int reach = -1;
+
+    for(int di = 0; di <= radius; di++)
+    {
+      if(contains(di, dj, dk) || (di == 0 && dj == 0 && dk == 0))
+      {
+        reach = di;
+      }
+    }
+    return reach;
+  }
+
+  /**
+   * Returns the offsets of every neighbor as {di, dj, dk}.
+   * @return int[][] offsets
+   */
+  public int[][] getOffsets()
+  {
+    int[][] offsets = new int[size][];
+    int n = 0;
+
+    for(int dj = -radius; dj <= radius; dj++)
+    {
+      for(int dk = -radius; dk <= radius; dk++)
+      {
+        for(int di = -radius; di <= radius; di++)
+        {
+          if(contains(di, dj, dk))
+          {
+            offsets[n++] = new int[] {di, dj, dk};
+          }
+        }
+      }
+    }
+    return offsets;
+  }
+}
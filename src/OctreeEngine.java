@@ -0,0 +1,609 @@
+/**
+ * Public class OctreeEngine
+ * A LifeEngine that stores an unbounded universe as a hash-consed octree, the 3D version of Hashlife.
+ * Every distinct cube of cells is stored once and remembers its own future, so repeating patterns can be advanced
+ * by 2^n generations at a time. advance(n) jumps ahead 2^n generations, step() is advance(0).
+ * The node cache is collected after any advance that leaves it larger than the configured memory budget. Only nodes
+ * reachable from the current universe are kept, and every remembered future is forgotten.
+ * The width, height and depth of the engine only describe the window that copyTo() shows. Cells outside of it keep living.
+ */
+public class OctreeEngine implements LifeEngine
+{
+  private static final long BYTES_PER_NODE = 112;   //Rough size of a Node and its children array on a 64 bit JVM
+  private static final int MIN_ROOT_LEVEL = 3;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final long maxNodes;
+  private final Neighborhood neighborhood;
+  private LifeRules rules;
+  private Node[] table;
+  private int nodeCount;
+  private final Node deadCell;
+  private final Node liveCell;
+  private Node[] emptyNodes = new Node[64];
+  private Node root;
+  private long generation;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis in the window shown by copyTo()
+   * @param height Number of cells along the z axis in the window shown by copyTo()
+   * @param depth Number of cells along the y axis in the window shown by copyTo()
+   * @param rules Specifies the rules used to advance the universe
+   * @param memoryBudget  Number of bytes the node cache may use before it is collected
+   */
+  public OctreeEngine(int width, int height, int depth, LifeRules rules, long memoryBudget)
+  {
+    this(width, height, depth, rules, Neighborhood.MOORE, memoryBudget);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis in the window shown by copyTo()
+   * @param height Number of cells along the z axis in the window shown by copyTo()
+   * @param depth Number of cells along the y axis in the window shown by copyTo()
+   * @param rules Specifies the rules used to advance the universe
+   * @param neighborhood  Specifies the cells counted as neighbors. Its radius must be 1.
+   * @param memoryBudget  Number of bytes the node cache may use before it is collected
+   */
+  public OctreeEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood, long memoryBudget)
+  {
+    if(neighborhood.getRadius() != 1)   //A node only remembers the future of its middle, which moves one cell per generation
+    {
+      throw new IllegalArgumentException("The octree engine only supports neighborhoods with a radius of 1");
+    }
+    checkRules(rules);
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.neighborhood = neighborhood;
+    this.rules = rules;
+    maxNodes = Math.max(memoryBudget/BYTES_PER_NODE, 1024);
+    table = new Node[1 << 16];
+    deadCell = new Node(0, null, 0, 0);
+    liveCell = new Node(0, null, 1, 1);
+    emptyNodes[0] = deadCell;
+    root = empty(MIN_ROOT_LEVEL);
+  }
+
+  /**
+   * Changes the rules used to advance the universe. Every remembered future is forgotten.
+   * @param rules Specifies the new rules
+   */
+  public void setRules(LifeRules rules)
+  {
+    checkRules(rules);
+    this.rules = rules;
+    collect();
+  }
+
+  /**
+   * Rejects rules that give birth to cells with 0 neighbors, since every empty node is assumed to stay empty.
+   */
+  private static void checkRules(LifeRules rules)
+  {
+    if(rules.isBorn(0))
+    {
+      throw new IllegalArgumentException("An octree universe cannot give birth to cells with 0 neighbors");
+    }
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  /**
+   * Returns the number of nodes in the cache.
+   * @return int nodeCount
+   */
+  public int getNodeCount()
+  {
+    return nodeCount;
+  }
+
+  /**
+   * Returns the level of the root node. The universe is a cube of 2^level cells centered on the origin.
+   * @return int level
+   */
+  public int getRootLevel()
+  {
+    return root.level;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return root.population;
+  }
+
+  public void clear()
+  {
+    table = new Node[1 << 16];
+    nodeCount = 0;
+    emptyNodes = new Node[64];
+    emptyNodes[0] = deadCell;
+    root = empty(MIN_ROOT_LEVEL);
+    generation = 0;
+  }
+
+  private static int childIndex(long i, long j, long k, int level)
+  {
+    int shift = level - 1;
+    return (int)(((i >>> shift) & 1) | (((j >>> shift) & 1) << 1) | (((k >>> shift) & 1) << 2));
+  }
+
+  /**
+   * Returns true if the cell lies inside the root, whose cells run from -2^(level-1) to 2^(level-1) - 1.
+   */
+  private boolean inRoot(long i, long j, long k)
+  {
+    long half = 1L << (root.level - 1);
+    return i >= -half && i < half && j >= -half && j < half && k >= -half && k < half;
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    if(!inRoot(i, j, k))
+    {
+      return false;
+    }
+
+    long half = 1L << (root.level - 1);
+    Node node = root;
+
+    while(node.level > 0 && node.population > 0)
+    {
+      node = node.children[childIndex(i + half, j + half, k + half, node.level)];
+    }
+    return node.population > 0;
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    while(!inRoot(i, j, k))
+    {
+      root = expand(root);
+    }
+
+    long half = 1L << (root.level - 1);
+    root = setCell(root, i + half, j + half, k + half, state ? liveCell : deadCell);
+  }
+
+  private Node setCell(Node node, long i, long j, long k, Node cell)
+  {
+    if(node.level == 0)
+    {
+      return cell;
+    }
+
+    int c = childIndex(i, j, k, node.level);
+    Node[] children = node.children.clone();
+    children[c] = setCell(children[c], i, j, k, cell);
+    return intern(node.level, children);
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.clear();
+    long half = 1L << (root.level - 1);
+    copyNode(root, -half, -half, -half, target);
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    clear();
+    source.forEachLiveCell((i, j, k) -> setAlive(i, j, k, true));
+    this.generation = generation;
+  }
+
+  private void copyNode(Node node, long i, long j, long k, GridStore target)
+  {
+    long size = 1L << node.level;
+
+    if(node.population == 0 || i >= target.getWidth() || j >= target.getHeight() || k >= target.getDepth()
+        || i + size <= 0 || j + size <= 0 || k + size <= 0)  //Empty or outside of the window
+    {
+      return;
+    }
+
+    if(node.level == 0)
+    {
+      target.setAlive((int)i, (int)j, (int)k, true);
+      return;
+    }
+
+    long childSize = size >>> 1;
+
+    for(int c = 0; c < 8; c++)
+    {
+      copyNode(node.children[c], i + (c & 1)*childSize, j + ((c >>> 1) & 1)*childSize, k + ((c >>> 2) & 1)*childSize, target);
+    }
+  }
+
+  public void step()
+  {
+    advance(0);
+  }
+
+  /**
+   * Advances the universe by 2^log2Generations generations.
+   * @param log2Generations The base 2 logarithm of the number of generations to advance
+   */
+  public void advance(int log2Generations)
+  {
+    if(log2Generations < 0 || log2Generations > 60)
+    {
+      throw new IllegalArgumentException("Can only advance by 2^0 to 2^60 generations");
+    }
+
+    //The pattern has to sit in the middle quarter of a root at least log2Generations + 3 levels high, so that it
+    //cannot grow out of the half of the root that comes back from successor()
+    while(root.level < log2Generations + 3 || centerPopulation(root) != root.population)
+    {
+      root = expand(root);
+    }
+
+    root = successor(root, log2Generations);
+    generation += 1L << log2Generations;
+
+    if(nodeCount > maxNodes)
+    {
+      collect();
+    }
+  }
+
+  private long centerPopulation(Node node)
+  {
+    return center(center(node)).population;
+  }
+
+  /**
+   * Returns a node twice the size of the given node, with the given node in the middle.
+   */
+  private Node expand(Node node)
+  {
+    Node empty = empty(node.level - 1);
+    Node[] children = new Node[8];
+
+    for(int c = 0; c < 8; c++)
+    {
+      Node[] grandChildren = new Node[8];
+
+      for(int g = 0; g < 8; g++)
+      {
+        grandChildren[g] = empty;
+      }
+      grandChildren[7 - c] = node.children[c];   //The opposite corner faces the middle
+      children[c] = intern(node.level, grandChildren);
+    }
+    return intern(node.level + 1, children);
+  }
+
+  /**
+   * Returns the node of half the size in the middle of the given node.
+   */
+  private Node center(Node node)
+  {
+    Node[] children = new Node[8];
+
+    for(int c = 0; c < 8; c++)
+    {
+      children[c] = node.children[c].children[7 - c];
+    }
+    return intern(node.level - 1, children);
+  }
+
+  private Node empty(int level)
+  {
+    if(emptyNodes[level] == null)
+    {
+      Node child = empty(level - 1);
+      emptyNodes[level] = intern(level, new Node[]{child, child, child, child, child, child, child, child});
+    }
+    return emptyNodes[level];
+  }
+
+  /**
+   * Returns the middle half of a node advanced by 2^log2Generations generations. log2Generations must be at most level - 2.
+   */
+  private Node successor(Node node, int log2Generations)
+  {
+    if(node.result != null && node.resultLog2 == log2Generations)
+    {
+      return node.result;
+    }
+
+    Node result;
+
+    if(node.population == 0)
+    {
+      result = empty(node.level - 1);
+    }
+    else if(node.level == 2)
+    {
+      result = bruteForce(node);
+    }
+    else
+    {
+      Node[] grandChildren = new Node[64];  //The node split into a 4x4x4 block of grandchildren
+
+      for(int x = 0; x < 4; x++)
+      {
+        for(int y = 0; y < 4; y++)
+        {
+          for(int z = 0; z < 4; z++)
+          {
+            Node child = node.children[(x >> 1) | ((y >> 1) << 1) | ((z >> 1) << 2)];
+            grandChildren[x + 4*y + 16*z] = child.children[(x & 1) | ((y & 1) << 1) | ((z & 1) << 2)];
+          }
+        }
+      }
+
+      boolean fullSpeed = log2Generations == node.level - 2;
+      Node[] halfway = new Node[27];  //3x3x3 overlapping nodes one level down, advanced halfway in full speed mode
+
+      for(int x = 0; x < 3; x++)
+      {
+        for(int y = 0; y < 3; y++)
+        {
+          for(int z = 0; z < 3; z++)
+          {
+            Node sub = gather(grandChildren, 4, x, y, z, node.level - 1);
+            halfway[x + 3*y + 9*z] = fullSpeed ? successor(sub, node.level - 3) : center(sub);
+          }
+        }
+      }
+
+      Node[] children = new Node[8];
+      int remaining = fullSpeed ? node.level - 3 : log2Generations;
+
+      for(int c = 0; c < 8; c++)
+      {
+        Node sub = gather(halfway, 3, c & 1, (c >>> 1) & 1, (c >>> 2) & 1, node.level - 1);
+        children[c] = successor(sub, remaining);
+      }
+      result = intern(node.level - 1, children);
+    }
+
+    node.result = result;
+    node.resultLog2 = log2Generations;
+    return result;
+  }
+
+  /**
+   * Builds a node from the 2x2x2 block of nodes starting at (x, y, z) in a cube of nodes with the given side length.
+   */
+  private Node gather(Node[] nodes, int side, int x, int y, int z, int level)
+  {
+    Node[] children = new Node[8];
+
+    for(int c = 0; c < 8; c++)
+    {
+      children[c] = nodes[(x + (c & 1)) + side*(y + ((c >>> 1) & 1)) + side*side*(z + ((c >>> 2) & 1))];
+    }
+    return intern(level, children);
+  }
+
+  /**
+   * Advances the middle 2x2x2 cells of a 4x4x4 node by one generation.
+   */
+  private Node bruteForce(Node node)
+  {
+    boolean[] cells = new boolean[64];
+
+    for(int x = 0; x < 4; x++)
+    {
+      for(int y = 0; y < 4; y++)
+      {
+        for(int z = 0; z < 4; z++)
+        {
+          Node child = node.children[(x >> 1) | ((y >> 1) << 1) | ((z >> 1) << 2)];
+          cells[x + 4*y + 16*z] = child.children[(x & 1) | ((y & 1) << 1) | ((z & 1) << 2)].population > 0;
+        }
+      }
+    }
+
+    Node[] children = new Node[8];
+
+    for(int c = 0; c < 8; c++)
+    {
+      int x = 1 + (c & 1);
+      int y = 1 + ((c >>> 1) & 1);
+      int z = 1 + ((c >>> 2) & 1);
+      int neighbors = 0;
+
+      for(int dx = -1; dx <= 1; dx++)
+      {
+        for(int dy = -1; dy <= 1; dy++)
+        {
+          for(int dz = -1; dz <= 1; dz++)
+          {
+            if(neighborhood.contains(dx, dy, dz) && cells[(x + dx) + 4*(y + dy) + 16*(z + dz)])
+            {
+              neighbors++;
+            }
+          }
+        }
+      }
+      children[c] = rules.nextState(cells[x + 4*y + 16*z], neighbors) ? liveCell : deadCell;
+    }
+    return intern(1, children);
+  }
+
+  /**
+   * Returns the canonical node with these children, creating it if it does not exist yet.
+   */
+  private Node intern(int level, Node[] children)
+  {
+    int hash = level;
+
+    for(int c = 0; c < 8; c++)
+    {
+      hash = hash*0x9E3779B1 + children[c].hash;
+    }
+    hash ^= hash >>> 16;
+
+    int bucket = hash & (table.length - 1);
+
+    for(Node node = table[bucket]; node != null; node = node.nextInBucket)
+    {
+      if(node.hash == hash && node.level == level && sameChildren(node.children, children))
+      {
+        return node;
+      }
+    }
+
+    long population = 0;
+
+    for(int c = 0; c < 8; c++)
+    {
+      population += children[c].population;
+    }
+
+    Node node = new Node(level, children, population, hash);
+    node.nextInBucket = table[bucket];
+    table[bucket] = node;
+    nodeCount++;
+
+    if(nodeCount > table.length)  //Keep the buckets short
+    {
+      rehash(table.length*2);
+    }
+    return node;
+  }
+
+  private static boolean sameChildren(Node[] a, Node[] b)
+  {
+    for(int c = 0; c < 8; c++)
+    {
+      if(a[c] != b[c])
+      {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash(int capacity)
+  {
+    Node[] oldTable = table;
+    table = new Node[capacity];
+
+    for(int b = 0; b < oldTable.length; b++)
+    {
+      Node node = oldTable[b];
+
+      while(node != null)
+      {
+        Node next = node.nextInBucket;
+        int bucket = node.hash & (capacity - 1);
+        node.nextInBucket = table[bucket];
+        table[bucket] = node;
+        node = next;
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the node cache with only the nodes reachable from the root and forgets every remembered future.
+   */
+  private void collect()
+  {
+    Node[] oldTable = table;
+    table = new Node[oldTable.length];
+    nodeCount = 0;
+
+    for(int b = 0; b < oldTable.length; b++)  //Forget every result so the old nodes can be freed
+    {
+      for(Node node = oldTable[b]; node != null; node = node.nextInBucket)
+      {
+        node.result = null;
+      }
+    }
+
+    keep(root);
+
+    for(int b = 0; b < table.length; b++)
+    {
+      for(Node node = table[b]; node != null; node = node.nextInBucket)
+      {
+        node.result = null;
+      }
+    }
+
+    emptyNodes = new Node[64];
+    emptyNodes[0] = deadCell;
+  }
+
+  /**
+   * Puts a node and every node below it back into the cache. A node points its result at itself once it has been kept.
+   */
+  private void keep(Node node)
+  {
+    if(node.level == 0 || node.result == node)
+    {
+      return;
+    }
+
+    node.result = node;
+
+    for(int c = 0; c < 8; c++)
+    {
+      keep(node.children[c]);
+    }
+
+    int bucket = node.hash & (table.length - 1);
+    node.nextInBucket = table[bucket];
+    table[bucket] = node;
+    nodeCount++;
+  }
+
+  /**
+   * private static class Node
+   * A cube of 2^level cells. Level 0 nodes are single cells.
+   */
+  private static class Node
+  {
+    private final int level;
+    private final Node[] children;
+    private final long population;
+    private final int hash;
+    private Node nextInBucket;
+    private Node result;    //The middle of this node advanced by 2^resultLog2 generations
+    private int resultLog2;
+
+    private Node(int level, Node[] children, long population, int hash)
+    {
+      this.level = level;
+      this.children = children;
+      this.population = population;
+      this.hash = hash;
+    }
+  }
+}
@@ -0,0 +1,258 @@
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * Public class OffHeapGrid
+ * A GridStore that packs the grid into direct ByteBuffers outside of the heap, so very large grids neither need a heap
+ * as large as the grid nor add to the work of the garbage collector.
+ * A direct buffer holds at most 2 GB, so the words are split over buffers of CHUNK_WORDS words each.
+ * The buffers are freed by dispose() instead of waiting for the garbage collector. The JVM limits the memory of direct
+ * buffers to the maximum heap size unless -XX:MaxDirectMemorySize is given.
+ */
+public class OffHeapGrid implements GridStore
+{
+  private static final int CHUNK_SHIFT = 27;
+  static final int CHUNK_WORDS = 1 << CHUNK_SHIFT;  //1 GB per buffer
+  private static final int CHUNK_MASK = CHUNK_WORDS - 1;
+  private static final Object UNSAFE;   //sun.misc.Unsafe, or null if buffers can only be freed by the garbage collector
+  private static final Method INVOKE_CLEANER;
+  private final int padding;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private final int wordsPerRow;
+  private final int rowsPerPlane;
+  private final int rowCount;
+  private final int wordCount;
+  private ByteBuffer[] buffers;
+  private LongBuffer[] chunks;  //Views of the buffers as words
+
+  static
+  {
+    Object unsafe = null;
+    Method invokeCleaner = null;
+
+    try   //Unsafe.invokeCleaner() frees a direct buffer on Java 9 and later
+    {
+      Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+      Field field = unsafeClass.getDeclaredField("theUnsafe");
+      field.setAccessible(true);
+      unsafe = field.get(null);
+      invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+    }
+    catch(ReflectiveOperationException | RuntimeException e)
+    {
+      unsafe = null;
+    }
+    UNSAFE = unsafe;
+    INVOKE_CLEANER = invokeCleaner;
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   */
+  public OffHeapGrid(int width, int height, int depth)
+  {
+    this(width, height, depth, 1);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param padding Number of border cells on each side, at least the radius of the Neighborhood used with the grid
+   */
+  public OffHeapGrid(int width, int height, int depth, int padding)
+  {
+    long words = BitGrid.getWordCount(width, height, depth, padding);
+
+    if(words > Integer.MAX_VALUE)
+    {
+      throw new IllegalArgumentException("A " + width + "x" + height + "x" + depth + " grid has more than 2^31 words");
+    }
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.padding = padding;
+    wordsPerRow = (width + 2*padding + 63) >>> 6;
+    rowsPerPlane = depth + 2*padding;
+    rowCount = (height + 2*padding)*rowsPerPlane;
+    wordCount = (int)words;
+
+    int chunkCount = getBufferCount(words);
+    buffers = new ByteBuffer[chunkCount];
+    chunks = new LongBuffer[chunkCount];
+
+    try
+    {
+      for(int c = 0; c < chunkCount; c++)  //Direct buffers start out zeroed
+      {
+        buffers[c] = ByteBuffer.allocateDirect(getBufferWords(words, c)*8).order(ByteOrder.nativeOrder());
+        chunks[c] = buffers[c].asLongBuffer();
+      }
+    }
+    catch(OutOfMemoryError e)   //Frees the buffers that were allocated before reporting it
+    {
+      dispose();
+      throw new IllegalArgumentException("Not enough direct memory for a " + width + "x" + height + "x" + depth
+          + " grid, raise -XX:MaxDirectMemorySize", e);
+    }
+  }
+
+  /**
+   * Class Constructor for a grid held in buffers that already exist, e.g. buffers mapped from a GridFile.
+   * dispose() frees the buffers too.
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param padding Number of border cells on each side
+   * @param buffers The words of the grid, CHUNK_WORDS words in every buffer but the last
+   */
+  OffHeapGrid(int width, int height, int depth, int padding, ByteBuffer[] buffers)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.padding = padding;
+    wordsPerRow = (width + 2*padding + 63) >>> 6;
+    rowsPerPlane = depth + 2*padding;
+    rowCount = (height + 2*padding)*rowsPerPlane;
+    wordCount = (int)BitGrid.getWordCount(width, height, depth, padding);
+    this.buffers = buffers;
+    chunks = new LongBuffer[buffers.length];
+
+    for(int c = 0; c < buffers.length; c++)
+    {
+      chunks[c] = buffers[c].asLongBuffer();
+    }
+  }
+
+  /**
+   * Returns the number of buffers a grid of this many words is split into.
+   * @param words The number of words
+   * @return int buffer count
+   */
+  static int getBufferCount(long words)
+  {
+    return (int)((words + CHUNK_WORDS - 1) >>> CHUNK_SHIFT);
+  }
+
+  /**
+   * Returns the number of words held by one of the buffers of a grid.
+   * @param words The number of words of the grid
+   * @param buffer  The buffer
+   * @return int words in the buffer
+   */
+  static int getBufferWords(long words, int buffer)
+  {
+    return (int)Math.min(CHUNK_WORDS, words - (long)buffer*CHUNK_WORDS);
+  }
+
+  /**
+   * Frees a direct or mapped buffer right away, or leaves it to the garbage collector if that is not possible. The
+   * buffer must not be used afterwards.
+   * @param buffer  The buffer to free
+   */
+  static void free(ByteBuffer buffer)
+  {
+    if(UNSAFE != null)
+    {
+      try
+      {
+        INVOKE_CLEANER.invoke(UNSAFE, buffer);
+      }
+      catch(ReflectiveOperationException e)   //Left to the garbage collector
+      {
+      }
+    }
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public int getPadding()
+  {
+    return padding;
+  }
+
+  public int getWordsPerRow()
+  {
+    return wordsPerRow;
+  }
+
+  public int getRowsPerPlane()
+  {
+    return rowsPerPlane;
+  }
+
+  public int getRowCount()
+  {
+    return rowCount;
+  }
+
+  public long getWord(int index)
+  {
+    return chunks[index >>> CHUNK_SHIFT].get(index & CHUNK_MASK);
+  }
+
+  public void setWord(int index, long value)
+  {
+    chunks[index >>> CHUNK_SHIFT].put(index & CHUNK_MASK, value);
+  }
+
+  public void clear()
+  {
+    long[] zeros = new long[Math.min(wordCount, 4096)];
+
+    for(LongBuffer chunk : chunks)
+    {
+      chunk.clear();
+
+      while(chunk.hasRemaining())
+      {
+        chunk.put(zeros, 0, Math.min(zeros.length, chunk.remaining()));
+      }
+      chunk.clear();
+    }
+  }
+
+  /**
+   * Frees the buffers right away. The grid cannot be used afterwards.
+   */
+  public void dispose()
+  {
+    if(buffers == null)
+    {
+      return;
+    }
+
+    for(ByteBuffer buffer : buffers)
+    {
+      if(buffer != null)
+      {
+        free(buffer);
+      }
+    }
+    buffers = null;
+    chunks = null;
+  }
+}
@@ -0,0 +1,504 @@
+import java.util.Random;
+
+/**
+ * Public enum Preset
+ * The starting patterns offered in the Presets menu. Some presets also restrict the depth of the grid or override the rules.
+ * Presets do not depend on JavaFX, so they can seed any LifeEngine.
+ */
+public enum Preset
+{
+  RANDOM("Random", 0, null),
+  CROSS_SECTION("Cross Section", 1, null),
+  POKEBALL("Oscillating Pokeball", 2, new LifeRules(3, 4, 7, 2)),
+  MAZE_CUBE("Maze Cube", 0, new LifeRules(3, 4, 7, 2)),
+  TWO_TOAD("Two Toad", 0, null),
+  PENTADECATHLON("PentaDecathlon", 0, null);
+
+  /**
+   * Public interface CellSink
+   * Receives the living cells of a preset. Coordinates start at 0 and may lie outside of the grid for small grids.
+   */
+  public interface CellSink
+  {
+    void addLiveCell(int i, int j, int k);
+  }
+
+  private final String title;
+  private final int depth;
+  private final LifeRules rules;
+
+  Preset(String title, int depth, LifeRules rules)
+  {
+    this.title = title;
+    this.depth = depth;
+    this.rules = rules;
+  }
+
+  public String getTitle()
+  {
+    return title;
+  }
+
+  /**
+   * Returns the name of the preset on the command line, e.g. cross-section.
+   * @return String name
+   */
+  public String getName()
+  {
+    return name().toLowerCase().replace('_', '-');
+  }
+
+  /**
+   * Returns the preset with a command line name, e.g. cross-section.
+   * @param name  The name of the preset
+   * @return Preset preset
+   */
+  public static Preset fromName(String name)
+  {
+    for(Preset preset : values())
+    {
+      if(preset.getName().equalsIgnoreCase(name) || preset.title.equalsIgnoreCase(name))
+      {
+        return preset;
+      }
+    }
+    throw new IllegalArgumentException("Unknown preset: " + name);
+  }
+
+  /**
+   * Returns the depth of the grid this preset runs in.
+   * @param depth The depth of the grid without the preset
+   * @return int depth
+   */
+  public int getDepth(int depth)
+  {
+    return this.depth > 0 ? Math.min(this.depth, depth) : depth;
+  }
+
+  /**
+   * Returns the rules this preset runs with.
+   * @param rules The rules without the preset
+   * @return LifeRules rules
+   */
+  public LifeRules getRules(LifeRules rules)
+  {
+    return this.rules != null ? this.rules : rules;
+  }
+
+  /**
+   * Returns a boolean value indicating if the preset overrides the rules.
+   * @return boolean overrides rules
+   */
+  public boolean hasRules()
+  {
+    return rules != null;
+  }
+
+  /**
+   * Adds the living cells of the preset.
+   * @param width Number of cells along the x axis
+   * @param height Number of cells along the z axis
+   * @param depth Number of cells along the y axis
+   * @param rand  Random numbers for the Random preset
+   * @param sink  Receives every living cell
+   */
+  public void seed(int width, int height, int depth, Random rand, CellSink sink)
+  {
+    switch(this)
+    {
+      case RANDOM:
+        seedRandom(width, height, depth, rand, sink);
+        break;
+      case CROSS_SECTION:
+        seedCrossSection(sink);
+        break;
+      case POKEBALL:
+        seedCornerBeacons2D(sink);
+        break;
+      case MAZE_CUBE:
+        seedCornerBeacons3D(sink);
+        break;
+      case TWO_TOAD:
+        seedTwoToad(sink);
+        break;
+      case PENTADECATHLON:
+        seedPentaDeca(sink);
+        break;
+    }
+  }
+
+  /**
+   * Presets are written in the coordinates of the original grid, which start at 1.
+   */
+  private static void add(CellSink sink, int i, int j, int k)
+  {
+    sink.addLiveCell(i - 1, j - 1, k - 1);
+  }
+
+  private static void seedRandom(int width, int height, int depth, Random rand, CellSink sink)
+  {
+    for(int i = 0; i<width; i++) //For every x
+    {
+      for (int j = 0; j < height; j++) //For every z
+      {
+        for (int k = 0; k < depth; k++) //For every y
+        {
+          if(rand.nextInt(100)==0)    //Sets 1% of random cells to alive
+          {
+            sink.addLiveCell(i,j,k);
+          }
+        }
+      }
+    }
+  }
+
+  private static void seedCrossSection(CellSink sink)
+  {
+
+    add(sink, 14,14,16);
+    add(sink, 15,14,16);
+    add(sink, 14,15,16);
+    add(sink, 15,15,16);
+    add(sink, 14,15,15);
+    add(sink, 15,15,15);
+    add(sink, 14,16,15);
+    add(sink, 15,16,15);
+    add(sink, 14,14,14);
+    add(sink, 15,14,14);
+
+    /*
+    //Block $
+    add(sink, 1,1,1);
+    add(sink, 2,1,1);
+    add(sink, 1,2,1);
+    add(sink, 2,2,1);
+    //Block $
+    add(sink, 1,29,1);
+    add(sink, 2,29,1);
+    add(sink, 1,30,1);
+    add(sink, 2,30,1);
+    //Block $
+    add(sink, 29,1,1);
+    add(sink, 29,2,1);
+    add(sink, 30,1,1);
+    add(sink, 30,2,1);
+    //Block $
+    add(sink, 29,29,1);
+    add(sink, 29,30,1);
+    add(sink, 30,29,1);
+    add(sink, 30,30,1);
+    //Beehive $
+    add(sink, 2,14,1);
+    add(sink, 1,15,1);
+    add(sink, 1,16,1);
+    add(sink, 3,15,1);
+    add(sink, 3,16,1);
+    add(sink, 2,17,1);
+    //Beehive $
+    add(sink, 14,2,1);
+    add(sink, 15,1,1);
+    add(sink, 15,3,1);
+    add(sink, 16,1,1);
+    add(sink, 16,3,1);
+    add(sink, 17,2,1);
+    //Beehive $
+    add(sink, 14,29,1);
+    add(sink, 15,28,1);
+    add(sink, 15,30,1);
+    add(sink, 16,28,1);
+    add(sink, 16,30,1);
+    add(sink, 17,29,1);
+    //Beehive $
+    add(sink, 29,14,1);
+    add(sink, 28,15,1);
+    add(sink, 30,15,1);
+    add(sink, 28,16,1);
+    add(sink, 30,16,1);
+    add(sink, 29,17,1);
+    //Blinker $
+    add(sink, 2,7,1);
+    add(sink, 2,8,1);
+    add(sink, 2,9,1);
+    //Blinker $
+    add(sink, 2,22,1);
+    add(sink, 2,23,1);
+    add(sink, 2,24,1);
+    //Blinker$
+    add(sink, 29,7,1);
+    add(sink, 29,8,1);
+    add(sink, 29,9,1);
+    //Blinker$
+    add(sink, 29,22,1);
+    add(sink, 29,23,1);
+    add(sink, 29,24,1);
+    //Pulsar
+    add(sink, 9,11,1);
+    add(sink, 9,12,1);
+    add(sink, 9,13,1);
+    add(sink, 9,17,1);
+    add(sink, 9,18,1);
+    add(sink, 9,19,1);
+
+    add(sink, 11,9,1);
+    add(sink, 12,9,1);
+    add(sink, 13,9,1);
+    add(sink, 17,9,1);
+    add(sink, 18,9,1);
+    add(sink, 19,9,1);
+
+    add(sink, 11,14,1);
+    add(sink, 12,14,1);
+    add(sink, 13,14,1);
+    add(sink, 17,14,1);
+    add(sink, 18,14,1);
+    add(sink, 19,14,1);
+
+    add(sink, 11,16,1);
+    add(sink, 12,16,1);
+    add(sink, 13,16,1);
+    add(sink, 17,16,1);
+    add(sink, 18,16,1);
+    add(sink, 19,16,1);
+
+    add(sink, 11,21,1);
+    add(sink, 12,21,1);
+    add(sink, 13,21,1);
+    add(sink, 17,21,1);
+    add(sink, 18,21,1);
+    add(sink, 19,21,1);
+
+    add(sink, 14,11,1);
+    add(sink, 14,12,1);
+    add(sink, 14,13,1);
+    add(sink, 14,17,1);
+    add(sink, 14,18,1);
+    add(sink, 14,19,1);
+
+    add(sink, 16,11,1);
+    add(sink, 16,12,1);
+    add(sink, 16,13,1);
+    add(sink, 16,17,1);
+    add(sink, 16,18,1);
+    add(sink, 16,19,1);
+
+    add(sink, 21,11,1);
+    add(sink, 21,12,1);
+    add(sink, 21,13,1);
+    add(sink, 21,17,1);
+    add(sink, 21,18,1);
+    add(sink, 21,19,1);
+    */
+  }
+  private static void seedCornerBeacons2D(CellSink sink)
+  {
+    //Beacons in each corner
+    add(sink, 1,1,1);
+    add(sink, 1,2,1);
+    add(sink, 1,29,1);
+    add(sink, 1,30,1);
+
+    add(sink, 2,1,1);
+    add(sink, 2,2,1);
+    add(sink, 2,29,1);
+    add(sink, 2,30,1);
+
+    add(sink, 29,1,1);
+    add(sink, 29,2,1);
+    add(sink, 29,29,1);
+    add(sink, 29,30,1);
+
+    add(sink, 30,1,1);
+    add(sink, 30,2,1);
+    add(sink, 30,29,1);
+    add(sink, 30,30,1);
+
+    add(sink, 3,3,1);
+    add(sink, 3,4,1);
+    add(sink, 3,27,1);
+    add(sink, 3,28,1);
+
+    add(sink, 4,3,1);
+    add(sink, 4,4,1);
+    add(sink, 4,27,1);
+    add(sink, 4,28,1);
+
+    add(sink, 27,3,1);
+    add(sink, 27,4,1);
+    add(sink, 27,27,1);
+    add(sink, 27,28,1);
+
+    add(sink, 28,3,1);
+    add(sink, 28,4,1);
+    add(sink, 28,27,1);
+    add(sink, 28,28,1);
+    //Next level
+    add(sink, 1,1,2);
+    add(sink, 1,2,2);
+    add(sink, 1,29,2);
+    add(sink, 1,30,2);
+
+    add(sink, 2,1,2);
+    add(sink, 2,2,2);
+    add(sink, 2,29,2);
+    add(sink, 2,30,2);
+
+    add(sink, 29,1,2);
+    add(sink, 29,2,2);
+    add(sink, 29,29,2);
+    add(sink, 29,30,2);
+
+    add(sink, 30,1,2);
+    add(sink, 30,2,2);
+    add(sink, 30,29,2);
+    add(sink, 30,30,2);
+
+    add(sink, 3,3,2);
+    add(sink, 3,4,2);
+    add(sink, 3,27,2);
+    add(sink, 3,28,2);
+
+    add(sink, 4,3,2);
+    add(sink, 4,4,2);
+    add(sink, 4,27,2);
+    add(sink, 4,28,2);
+
+    add(sink, 27,3,2);
+    add(sink, 27,4,2);
+    add(sink, 27,27,2);
+    add(sink, 27,28,2);
+
+    add(sink, 28,3,2);
+    add(sink, 28,4,2);
+    add(sink, 28,27,2);
+    add(sink, 28,28,2);
+  }
+  private static void seedCornerBeacons3D(CellSink sink)
+  {
+    //Beacons in each corner
+    add(sink, 1,1,1);
+    add(sink, 1,2,1);
+    add(sink, 1,29,30);
+    add(sink, 1,30,30);
+
+    add(sink, 2,1,1);
+    add(sink, 2,2,1);
+    add(sink, 2,29,30);
+    add(sink, 2,30,30);
+
+    add(sink, 29,1,30);
+    add(sink, 29,2,30);
+    add(sink, 29,29,1);
+    add(sink, 29,30,1);
+
+    add(sink, 30,1,30);
+    add(sink, 30,2,30);
+    add(sink, 30,29,1);
+    add(sink, 30,30,1);
+
+    add(sink, 3,3,1);
+    add(sink, 3,4,1);
+    add(sink, 3,27,30);
+    add(sink, 3,28,30);
+
+    add(sink, 4,3,1);
+    add(sink, 4,4,1);
+    add(sink, 4,27,30);
+    add(sink, 4,28,30);
+
+    add(sink, 27,3,30);
+    add(sink, 27,4,30);
+    add(sink, 27,27,1);
+    add(sink, 27,28,1);
+
+    add(sink, 28,3,30);
+    add(sink, 28,4,30);
+    add(sink, 28,27,1);
+    add(sink, 28,28,1);
+    //Next level
+    add(sink, 1,1,2);
+    add(sink, 1,2,2);
+    add(sink, 1,29,29);
+    add(sink, 1,30,29);
+
+    add(sink, 2,1,2);
+    add(sink, 2,2,2);
+    add(sink, 2,29,29);
+    add(sink, 2,30,29);
+
+    add(sink, 29,1,29);
+    add(sink, 29,2,29);
+    add(sink, 29,29,2);
+    add(sink, 29,30,2);
+
+    add(sink, 30,1,29);
+    add(sink, 30,2,29);
+    add(sink, 30,29,2);
+    add(sink, 30,30,2);
+
+    add(sink, 3,3,2);
+    add(sink, 3,4,2);
+    add(sink, 3,27,29);
+    add(sink, 3,28,29);
+
+    add(sink, 4,3,2);
+    add(sink, 4,4,2);
+    add(sink, 4,27,29);
+    add(sink, 4,28,29);
+
+    add(sink, 27,3,29);
+    add(sink, 27,4,29);
+    add(sink, 27,27,2);
+    add(sink, 27,28,2);
+
+    add(sink, 28,3,29);
+    add(sink, 28,4,29);
+    add(sink, 28,27,2);
+    add(sink, 28,28,2);
+  }
+  private static void seedTwoToad(CellSink sink)
+  {
+    add(sink, 2,14,1);
+    add(sink, 3,14,1);
+    add(sink, 4,14,1);
+    add(sink, 27,14,1);
+    add(sink, 28,14,1);
+    add(sink, 29,14,1);
+
+    add(sink, 1,15,1);
+    add(sink, 2,15,1);
+    add(sink, 3,15,1);
+    add(sink, 28,15,1);
+    add(sink, 29,15,1);
+    add(sink, 30,15,1);
+  }
+  private static void seedPentaDeca(CellSink sink)
+  {
+    add(sink, 13,13,1);
+    add(sink, 18,13,1);
+    add(sink, 13,15,1);
+    add(sink, 18,15,1);
+
+    add(sink, 11,14,1);
+    add(sink, 12,14,1);
+    add(sink, 19,14,1);
+    add(sink, 20,14,1);
+    add(sink, 14,14,1);
+    add(sink, 15,14,1);
+    add(sink, 16,14,1);
+    add(sink, 17,14,1);
+
+    add(sink, 13,13,30);
+    add(sink, 18,13,30);
+    add(sink, 13,15,30);
+    add(sink, 18,15,30);
+
+    add(sink, 11,14,30);
+    add(sink, 12,14,30);
+    add(sink, 19,14,30);
+    add(sink, 20,14,30);
+    add(sink, 14,14,30);
+    add(sink, 15,14,30);
+    add(sink, 16,14,30);
+    add(sink, 17,14,30);
+  }
+}
@@ -0,0 +1,257 @@
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Public class SimulationRunner
+ * Advances a LifeEngine on its own thread, either as fast as possible or at a fixed number of generations per second.
+ * After every generation the grid is copied into a triple buffered GridSnapshot, so a renderer can sample the latest
+ * completed generation at its own pace without ever blocking the simulation.
+ * With a CycleDetector the runner stops advancing a grid that has become a still life, since every further generation
+ * would be the same.
+ */
+public class SimulationRunner implements Runnable
+{
+  private final LifeEngine engine;
+  private final Object pauseLock = new Object();
+  private final AtomicReference<GridSnapshot> latestSnapshot;
+  private GridSnapshot writeSnapshot;   //Only touched by the simulation thread
+  private GridSnapshot readSnapshot;    //Only touched by the thread sampling the snapshots
+  private volatile double generationsPerSecond;
+  private volatile boolean paused = true;
+  private volatile boolean stopped;
+  private volatile Checkpointer checkpointer;
+  private CycleDetector cycleDetector;  //Only touched by the simulation thread once it started
+  private volatile String cycleDescription;
+  private Thread thread;
+
+  /**
+   * Class Constructor
+   * @param engine  Specifies the engine to advance. It must not be touched by any other thread once the runner starts.
+   * @param generationsPerSecond  Specifies the rate to advance the engine at, or 0 to advance it as fast as possible.
+   */
+  public SimulationRunner(LifeEngine engine, double generationsPerSecond)
+  {
+    this.engine = engine;
+    this.generationsPerSecond = generationsPerSecond;
+    writeSnapshot = createSnapshot();
+    readSnapshot = createSnapshot();
+    latestSnapshot = new AtomicReference<>(createSnapshot());
+  }
+
+  private GridSnapshot createSnapshot()
+  {
+    return new GridSnapshot(new BitGrid(engine.getWidth(), engine.getHeight(), engine.getDepth()));
+  }
+
+  /**
+   * Starts the simulation thread. The runner starts out paused.
+   */
+  public synchronized void start()
+  {
+    if(thread == null)
+    {
+      thread = new Thread(this, "Simulation");
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * Stops the simulation thread and waits for it to finish.
+   */
+  public synchronized void stop()
+  {
+    stopped = true;
+
+    synchronized(pauseLock)
+    {
+      pauseLock.notifyAll();
+    }
+
+    if(thread != null)
+    {
+      thread.interrupt();
+
+      try
+      {
+        thread.join();
+      }
+      catch(InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+      thread = null;
+    }
+  }
+
+  /**
+   * Stops the simulation thread and forgets the generations published and the cycle found, so the runner can be started
+   * again after its engine was cleared and seeded with a new game. The snapshots are kept for the new game.
+   */
+  public synchronized void reset()
+  {
+    stop();
+    stopped = false;
+    paused = true;
+    writeSnapshot.clear();
+    readSnapshot.clear();
+    latestSnapshot.get().clear();
+    cycleDescription = null;
+
+    if(cycleDetector != null)
+    {
+      cycleDetector.reset();
+    }
+  }
+
+  public void setPaused(boolean state)
+  {
+    synchronized(pauseLock)
+    {
+      paused = state;
+      pauseLock.notifyAll();
+    }
+  }
+
+  public boolean isPaused()
+  {
+    return paused;
+  }
+
+  /**
+   * Changes the rate the engine is advanced at.
+   * @param generationsPerSecond  Generations per second, or 0 to advance the engine as fast as possible
+   */
+  public void setGenerationsPerSecond(double generationsPerSecond)
+  {
+    this.generationsPerSecond = generationsPerSecond;
+  }
+
+  public double getGenerationsPerSecond()
+  {
+    return generationsPerSecond;
+  }
+
+  /**
+   * Detects still lifes and oscillators. Must be called before the runner starts.
+   * @param cycleDetector The CycleDetector, or null to stop detecting cycles
+   */
+  public void setCycleDetector(CycleDetector cycleDetector)
+  {
+    this.cycleDetector = cycleDetector;
+  }
+
+  /**
+   * Returns a description of the cycle the grid settled into, like "stable at gen 40" or "period 2 from gen 37".
+   * @return String description, or null if no cycle was found
+   */
+  public String getCycleDescription()
+  {
+    return cycleDescription;
+  }
+
+  /**
+   * Saves checkpoints of the engine after every generation that one is due.
+   * @param checkpointer  The started Checkpointer, or null to stop saving checkpoints
+   */
+  public void setCheckpointer(Checkpointer checkpointer)
+  {
+    this.checkpointer = checkpointer;
+  }
+
+  /**
+   * Returns the latest completed generation. Must only be called from a single thread, and the returned snapshot
+   * is only valid until the next call.
+   * @return GridSnapshot latest generation
+   */
+  public GridSnapshot getLatestSnapshot()
+  {
+    if(latestSnapshot.get().getGeneration() > readSnapshot.getGeneration())
+    {
+      readSnapshot = latestSnapshot.getAndSet(readSnapshot);
+    }
+    return readSnapshot;
+  }
+
+  private void publish()
+  {
+    writeSnapshot.capture(engine);
+    writeSnapshot = latestSnapshot.getAndSet(writeSnapshot);
+  }
+
+  public void run()
+  {
+    publish();
+    detectCycle();
+    long nextStep = System.nanoTime();
+
+    while(!stopped)
+    {
+      if(paused || isStable())
+      {
+        synchronized(pauseLock)
+        {
+          while((paused || isStable()) && !stopped)
+          {
+            try
+            {
+              pauseLock.wait();
+            }
+            catch(InterruptedException e)
+            {
+              //Checked by the loop condition
+            }
+          }
+        }
+        nextStep = System.nanoTime();
+      }
+
+      double rate = generationsPerSecond;
+
+      if(rate > 0)  //Wait for the next step to be due
+      {
+        long period = (long)(1000000000L/rate);
+        nextStep += period;
+        long now = System.nanoTime();
+
+        if(nextStep - now < -period)  //Fell more than a step behind, so don't try to catch up
+        {
+          nextStep = now;
+        }
+
+        while(!stopped && !paused && nextStep - System.nanoTime() > 0)
+        {
+          LockSupport.parkNanos(nextStep - System.nanoTime());
+        }
+
+        if(stopped || paused)
+        {
+          continue;
+        }
+      }
+
+      engine.step();
+      publish();
+      Checkpointer currentCheckpointer = checkpointer;
+
+      if(currentCheckpointer != null)
+      {
+        currentCheckpointer.afterStep(engine);
+      }
+      detectCycle();
+    }
+  }
+
+  private void detectCycle()
+  {
+    if(cycleDetector != null && cycleDetector.update(engine))
+    {
+      cycleDescription = cycleDetector.describe();
+    }
+  }
+
+  private boolean isStable()
+  {
+    return cycleDetector != null && cycleDetector.isStable();
+  }
+}
@@ -0,0 +1,218 @@
+/**
+ * Public class SparseEngine
+ * A LifeEngine for unbounded, mostly empty universes. Only living cells are stored, as packed x/z/y coordinates in a
+ * LongHashSet, and each generation only counts the neighbors of living cells, so memory and time per generation grow
+ * with the population instead of the size of the universe.
+ * Coordinates are packed into 21 bits each, so the universe wraps around after 2,097,152 cells along each axis.
+ * The width, height and depth of the engine only describe the window that copyTo() shows. Cells outside of it keep living.
+ */
+public class SparseEngine implements LifeEngine
+{
+  private static final int COORDINATE_BITS = 21;
+  private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+  private final int width;
+  private final int height;
+  private final int depth;
+  private LifeRules rules;
+  private LongHashSet currentCells;
+  private LongHashSet nextCells;
+  private final LongCountMap neighborCounts;
+  private final Neighborhood neighborhood;
+  private final int[][] countedOffsets;   //The neighbors and the cell itself
+  private long generation;
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis in the window shown by copyTo()
+   * @param height Number of cells along the z axis in the window shown by copyTo()
+   * @param depth Number of cells along the y axis in the window shown by copyTo()
+   * @param rules Specifies the rules used to advance the grid. Cells cannot be born with 0 neighbors.
+   */
+  public SparseEngine(int width, int height, int depth, LifeRules rules)
+  {
+    this(width, height, depth, rules, Neighborhood.MOORE);
+  }
+
+  /**
+   * Class Constructor
+   * @param width Number of cells along the x axis in the window shown by copyTo()
+   * @param height Number of cells along the z axis in the window shown by copyTo()
+   * @param depth Number of cells along the y axis in the window shown by copyTo()
+   * @param rules Specifies the rules used to advance the grid. Cells cannot be born with 0 neighbors.
+   * @param neighborhood  Specifies the cells counted as neighbors
+   */
+  public SparseEngine(int width, int height, int depth, LifeRules rules, Neighborhood neighborhood)
+  {
+    this.width = width;
+    this.height = height;
+    this.depth = depth;
+    this.neighborhood = neighborhood;
+    setRules(rules);
+    int[][] offsets = neighborhood.getOffsets();
+    countedOffsets = new int[offsets.length + 1][];
+    countedOffsets[0] = new int[3];
+    System.arraycopy(offsets, 0, countedOffsets, 1, offsets.length);
+    currentCells = new LongHashSet(1024);
+    nextCells = new LongHashSet(1024);
+    neighborCounts = new LongCountMap(1024*countedOffsets.length);
+  }
+
+  public void setRules(LifeRules rules)
+  {
+    if(rules.isBorn(0))
+    {
+      throw new IllegalArgumentException("A sparse universe cannot give birth to cells with 0 neighbors");
+    }
+    this.rules = rules;
+  }
+
+  public LifeRules getRules()
+  {
+    return rules;
+  }
+
+  public Neighborhood getNeighborhood()
+  {
+    return neighborhood;
+  }
+
+  /**
+   * Packs a coordinate into a single non-negative key.
+   */
+  static long pack(int i, int j, int k)
+  {
+    return ((i & COORDINATE_MASK) << (2*COORDINATE_BITS)) | ((j & COORDINATE_MASK) << COORDINATE_BITS) | (k & COORDINATE_MASK);
+  }
+
+  /**
+   * Unpacks a single coordinate from a key, restoring its sign.
+   */
+  private static int unpack(long key, int shift)
+  {
+    return (int)(((key >>> shift) & COORDINATE_MASK) << (64 - COORDINATE_BITS) >> (64 - COORDINATE_BITS));
+  }
+
+  public int getWidth()
+  {
+    return width;
+  }
+
+  public int getHeight()
+  {
+    return height;
+  }
+
+  public int getDepth()
+  {
+    return depth;
+  }
+
+  public boolean isAlive(int i, int j, int k)
+  {
+    return currentCells.contains(pack(i, j, k));
+  }
+
+  public void setAlive(int i, int j, int k, boolean state)
+  {
+    if(state)
+    {
+      currentCells.add(pack(i, j, k));
+    }
+    else
+    {
+      currentCells.remove(pack(i, j, k));
+    }
+  }
+
+  public void clear()
+  {
+    currentCells.clear();
+    nextCells.clear();
+    generation = 0;
+  }
+
+  public long getGeneration()
+  {
+    return generation;
+  }
+
+  public long getPopulation()
+  {
+    return currentCells.size();
+  }
+
+  public void copyTo(GridStore target)
+  {
+    target.clear();
+
+    for(int slot = 0; slot < currentCells.capacity(); slot++)
+    {
+      long key = currentCells.keyAt(slot);
+
+      if(key != LongHashSet.EMPTY)
+      {
+        int i = unpack(key, 2*COORDINATE_BITS);
+        int j = unpack(key, COORDINATE_BITS);
+        int k = unpack(key, 0);
+
+        if(i >= 0 && i < target.getWidth() && j >= 0 && j < target.getHeight() && k >= 0 && k < target.getDepth())
+        {
+          target.setAlive(i, j, k, true);
+        }
+      }
+    }
+  }
+
+  public void restore(GridStore source, long generation)
+  {
+    clear();
+    source.forEachLiveCell((i, j, k) -> setAlive(i, j, k, true));
+    this.generation = generation;
+  }
+
+  public void step()
+  {
+    neighborCounts.clear();
+
+    for(int slot = 0; slot < currentCells.capacity(); slot++) //Every living cell adds itself to the count of its neighbors and itself
+    {
+      long key = currentCells.keyAt(slot);
+
+      if(key != LongHashSet.EMPTY)
+      {
+        int i = unpack(key, 2*COORDINATE_BITS);
+        int j = unpack(key, COORDINATE_BITS);
+        int k = unpack(key, 0);
+
+        for(int n = 0; n < countedOffsets.length; n++)
+        {
+          int[] offset = countedOffsets[n];
+          neighborCounts.add(pack(i + offset[0], j + offset[1], k + offset[2]), 1);
+        }
+      }
+    }
+
+    nextCells.clear();
+
+    for(int slot = 0; slot < neighborCounts.capacity(); slot++)
+    {
+      long key = neighborCounts.keyAt(slot);
+
+      if(key != LongHashSet.EMPTY)
+      {
+        boolean alive = currentCells.contains(key);
+        int neighbors = neighborCounts.countAt(slot) - (alive ? 1 : 0);   //The count includes the cell itself
+
+        if(rules.nextState(alive, neighbors))
+        {
+          nextCells.add(key);
+        }
+      }
+    }
+
+    LongHashSet oldCells = currentCells;
+    currentCells = nextCells;
+    nextCells = oldCells;
+    generation++;
+  }
+}
@@ -0,0 +1,466 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Public class SweepRunner
+ * Runs every combination of a grid of rules with every seed in a list, one board per task on a fixed pool of workers,
+ * and writes a CSV line with the final density, the cycle and the runtime of every board.
+ * Each worker keeps one engine and one CycleDetector and reuses them for every board it runs. A board stops early once
+ * it has settled into a cycle, and only steps what is left of the last period to reach its final generation.
+ * With the virtual scheduler every board runs at once on its own virtual thread with its own engine, and yields
+ * between generations. A Semaphore lets only as many boards step at the same time as there are workers. Virtual
+ * threads need Java 21, on older versions the virtual scheduler is rejected rather than silently replaced by the pool.
+ * Finished boards wait in a bounded queue for the CSV writer, so boards block rather than piling up results when the
+ * output falls behind.
+ * Usage: java SweepRunner [options]
+ *  --rule-grid R1,R2,R3,R4  Values of each rule, a number or a range like 2-5 (default 0-10,0-10,0-10,0-10)
+ *  --seeds S             Seeds of the random preset, numbers and ranges separated by commas like 1-100 (default 1)
+ *  --size WxHxD          Size of every board, or a single number for a cube (default 30x30x30)
+ *  --generations N       Generations to run every board (default 100)
+ *  --preset name         Starting pattern, seeded with each seed. The rules of the preset are ignored. (default random)
+ *  --neighborhood name   von-neumann (6), 18, moore (26) or radius-2 (124) (default moore)
+ *  --toroidal            Wraps the boards around at their edges
+ *  --workers N           Boards stepped at the same time (default the number of processors)
+ *  --scheduler name      pool, a worker thread per board at a time, or virtual, a virtual thread per board (default pool)
+ *  --result-queue N      Finished boards waiting to be written before boards block (default 1024)
+ *  --cycle-history N     Generations remembered to detect cycles, the longest period found (default 1024)
+ *  --output file         CSV file to write (default the standard output)
+ */
+public class SweepRunner
+{
+  private static final String HEADER = "r1,r2,r3,r4,seed,generations,population,density,period,cycle_start,runtime_ms";
+  private int width = 30;
+  private int height = 30;
+  private int depth = 30;
+  private int[][] ruleValues = {range(0, 10), range(0, 10), range(0, 10), range(0, 10)};
+  private int[] seeds = {1};
+  private long generations = 100;
+  private Preset preset = Preset.RANDOM;
+  private Neighborhood neighborhood = Neighborhood.MOORE;
+  private boolean toroidal;
+  private int workers = Runtime.getRuntime().availableProcessors();
+  private int cycleHistory = CycleDetector.DEFAULT_HISTORY;
+  private boolean virtualThreads;
+  private int resultQueueSize = 1024;
+  private String outputFile;
+  private ThreadLocal<Board> boards;  //The engine and CycleDetector of each worker
+
+  public static void main(String[] args)
+  {
+    SweepRunner runner = new SweepRunner();
+
+    try
+    {
+      runner.parseArguments(args);
+      runner.run();
+    }
+    catch(IllegalArgumentException | IOException e)
+    {
+      System.err.println("Error: " + e.getMessage());
+      printUsage();
+      System.exit(1);
+    }
+  }
+
+  private static void printUsage()
+  {
+    System.err.println("Usage: java SweepRunner [--rule-grid R1,R2,R3,R4] [--seeds S] [--size WxHxD] [--generations N] [--preset name]");
+    System.err.println("       [--neighborhood name] [--toroidal] [--workers N] [--cycle-history N] [--scheduler pool|virtual]");
+    System.err.println("       [--result-queue N] [--output file]");
+  }
+
+  /**
+   * Reads the command line options.
+   * @param args  The command line arguments
+   */
+  private void parseArguments(String[] args)
+  {
+    for(int a = 0; a < args.length; a++)
+    {
+      String option = args[a];
+
+      if(option.equals("--toroidal"))
+      {
+        toroidal = true;
+        continue;
+      }
+
+      if(a + 1 >= args.length)
+      {
+        throw new IllegalArgumentException("Missing value for " + option);
+      }
+      String value = args[++a];
+
+      switch(option)
+      {
+        case "--rule-grid":
+          String[] parts = value.split(",");
+
+          if(parts.length != 4)
+          {
+            throw new IllegalArgumentException("--rule-grid needs 4 values or ranges separated by ','");
+          }
+
+          for(int r = 0; r < 4; r++)
+          {
+            ruleValues[r] = parseList(parts[r], option);
+          }
+          break;
+        case "--seeds":
+          seeds = parseList(value, option);
+          break;
+        case "--size":
+          GridSize size = GridSize.parse(value);
+          width = size.getWidth();
+          height = size.getHeight();
+          depth = size.getDepth();
+          break;
+        case "--generations":
+          generations = parseList(value, option)[0];
+          break;
+        case "--preset":
+          preset = Preset.fromName(value);
+          break;
+        case "--neighborhood":
+          neighborhood = Neighborhood.fromName(value);
+          break;
+        case "--workers":
+          workers = Math.max(parseList(value, option)[0], 1);
+          break;
+        case "--cycle-history":
+          cycleHistory = parseList(value, option)[0];
+          break;
+        case "--scheduler":
+          if(!value.equals("pool") && !value.equals("virtual"))
+          {
+            throw new IllegalArgumentException("--scheduler must be pool or virtual");
+          }
+          virtualThreads = value.equals("virtual");
+          break;
+        case "--result-queue":
+          resultQueueSize = Math.max(parseList(value, option)[0], 1);
+          break;
+        case "--output":
+          outputFile = value;
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown option " + option);
+      }
+    }
+  }
+
+  /**
+   * Parses numbers and ranges separated by commas, like 1,4-6.
+   */
+  private static int[] parseList(String value, String option)
+  {
+    List<Integer> numbers = new ArrayList<>();
+
+    for(String part : value.split(","))
+    {
+      String[] bounds = part.trim().split("-", 2);
+
+      try
+      {
+        int from = Integer.parseInt(bounds[0].trim());
+        int to = bounds.length > 1 ? Integer.parseInt(bounds[1].trim()) : from;
+
+        if(from < 0 || to < from)
+        {
+          throw new IllegalArgumentException("Not a valid range for " + option + ": " + part);
+        }
+
+        for(int n = from; n <= to; n++)
+        {
+          numbers.add(n);
+        }
+      }
+      catch(NumberFormatException e)
+      {
+        throw new IllegalArgumentException("Not a number for " + option + ": " + part);
+      }
+    }
+    return numbers.stream().mapToInt(Integer::intValue).toArray();
+  }
+
+  private static int[] range(int from, int to)
+  {
+    int[] values = new int[to - from + 1];
+
+    for(int n = 0; n < values.length; n++)
+    {
+      values[n] = from + n;
+    }
+    return values;
+  }
+
+  /**
+   * Returns every board of the sweep, the seeds of each combination of rules in a row.
+   */
+  private List<BoardTask> createTasks()
+  {
+    List<BoardTask> tasks = new ArrayList<>();
+
+    for(int r1 : ruleValues[0])
+    {
+      for(int r2 : ruleValues[1])
+      {
+        for(int r3 : ruleValues[2])
+        {
+          for(int r4 : ruleValues[3])
+          {
+            for(int seed : seeds)
+            {
+              tasks.add(new BoardTask(r1, r2, r3, r4, seed));
+            }
+          }
+        }
+      }
+    }
+    return tasks;
+  }
+
+  /**
+   * Runs every board on the pool of workers and writes their results as they finish.
+   */
+  private void run() throws IOException
+  {
+    depth = preset.getDepth(depth);
+
+    if(toroidal && (width < neighborhood.getRadius() || height < neighborhood.getRadius() || depth < neighborhood.getRadius()))
+    {
+      throw new IllegalArgumentException("A toroidal grid must be at least " + neighborhood.getRadius() + " cells along each axis");
+    }
+
+    List<BoardTask> tasks = createTasks();
+    boards = ThreadLocal.withInitial(Board::new);
+    ExecutorService executor = virtualThreads ? createVirtualThreadExecutor() : null;
+    Semaphore stepPermits = executor != null ? new Semaphore(workers) : null;
+    String scheduler = executor != null ? "a virtual thread per board, " + workers + " stepping at once"
+        : workers + " workers";
+
+    if(executor == null)
+    {
+      executor = Executors.newFixedThreadPool(workers);
+    }
+    System.err.println("Sweep:       " + tasks.size() + " boards of " + width + "x" + height + "x" + depth + ", "
+        + generations + " generations, " + scheduler);
+
+    Writer writer = outputFile != null ? Files.newBufferedWriter(Paths.get(outputFile), StandardCharsets.UTF_8)
+        : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+    BlockingQueue<Object> results = new ArrayBlockingQueue<>(resultQueueSize);   //CSV lines, or the exception of a board
+    long startTime = System.nanoTime();
+
+    try
+    {
+      for(BoardTask task : tasks)
+      {
+        executor.execute(() -> task.runInto(results, stepPermits));
+      }
+
+      writer.write(HEADER);
+      writer.write('\n');
+
+      for(int t = 0; t < tasks.size(); t++)
+      {
+        Object result = results.take();
+
+        if(result instanceof RuntimeException)
+        {
+          throw (RuntimeException)result;
+        }
+        writer.write((String)result);
+        writer.write('\n');
+      }
+    }
+    catch(InterruptedException e)
+    {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted", e);
+    }
+    finally
+    {
+      executor.shutdownNow();
+      writer.flush();
+
+      if(outputFile != null)
+      {
+        writer.close();
+      }
+    }
+
+    double seconds = (System.nanoTime() - startTime)/1e9;
+    System.err.printf("Time:        %.3f s%n", seconds);
+    System.err.printf("Throughput:  %.0f boards/hour%n", tasks.size()/seconds*3600);
+  }
+
+  /**
+   * Returns an ExecutorService that starts a virtual thread for every task.
+   * Created through reflection, so the runner still builds and runs the pool scheduler on Java 17.
+   * @throws IllegalArgumentException If this Java has no virtual threads
+   */
+  private static ExecutorService createVirtualThreadExecutor()
+  {
+    try
+    {
+      return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    }
+    catch(ReflectiveOperationException | UnsupportedOperationException e)   //Missing, or a preview before Java 21
+    {
+      throw new IllegalArgumentException("--scheduler virtual needs Java 21 or later, this is Java "
+          + System.getProperty("java.version") + ". Use --scheduler pool");
+    }
+  }
+
+  /**
+   * private class Board
+   * The engine and CycleDetector a worker reuses for every board it runs. With virtual threads every board has its own.
+   */
+  private class Board
+  {
+    private final BitGridEngine engine;
+    private final CycleDetector cycleDetector = new CycleDetector(cycleHistory);
+
+    private Board()
+    {
+      engine = new BitGridEngine(width, height, depth, new LifeRules(3, 3, 3, 2), neighborhood);
+      engine.setToroidal(toroidal);
+    }
+  }
+
+  /**
+   * private class BoardTask
+   * A single board of the sweep, a combination of rules and a seed.
+   */
+  private class BoardTask
+  {
+    private final int r1;
+    private final int r2;
+    private final int r3;
+    private final int r4;
+    private final int seed;
+
+    private BoardTask(int r1, int r2, int r3, int r4, int seed)
+    {
+      this.r1 = r1;
+      this.r2 = r2;
+      this.r3 = r3;
+      this.r4 = r4;
+      this.seed = seed;
+    }
+
+    /**
+     * Runs the board and puts its CSV line into the queue of results, waiting while the queue is full.
+     * @param results Receives the CSV line, or the exception that stopped the board
+     * @param stepPermits Permits to step a generation, or null to step without them on a worker of the pool
+     */
+    private void runInto(BlockingQueue<Object> results, Semaphore stepPermits)
+    {
+      Object result;
+
+      try
+      {
+        result = run(stepPermits == null ? boards.get() : new Board(), stepPermits);
+      }
+      catch(InterruptedException e)   //The sweep was stopped
+      {
+        return;
+      }
+      catch(RuntimeException e)
+      {
+        result = e;
+      }
+
+      try
+      {
+        results.put(result);
+      }
+      catch(InterruptedException e)
+      {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    /**
+     * Runs the board on an engine, the same rules and seeding as the game.
+     * @return String the CSV line of the board
+     */
+    private String run(Board board, Semaphore stepPermits) throws InterruptedException
+    {
+      long startTime = System.nanoTime();
+      BitGridEngine engine = board.engine;
+      CycleDetector cycleDetector = board.cycleDetector;
+      engine.clear();
+      engine.setRules(new LifeRules(r1, r2, r3, r4));
+      cycleDetector.reset();
+      preset.seed(width, height, depth, new Random(seed), (i, j, k) ->
+      {
+        if(i >= 0 && i < width && j >= 0 && j < height && k >= 0 && k < depth)
+        {
+          engine.setAlive(i, j, k, true);
+        }
+      });
+      cycleDetector.update(engine);
+
+      while(engine.getGeneration() < generations)
+      {
+        step(engine, stepPermits);
+
+        if(cycleDetector.update(engine))  //Whole periods leave the board as it is
+        {
+          long left = (generations - engine.getGeneration())%cycleDetector.getPeriod();
+
+          for(long g = 0; g < left; g++)
+          {
+            step(engine, stepPermits);
+          }
+          break;
+        }
+      }
+
+      long population = engine.getPopulation();
+      double density = (double)population/((long)width*height*depth);
+      double runtime = (System.nanoTime() - startTime)/1e6;
+      return String.format(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%.6f,%d,%d,%.3f", r1, r2, r3, r4, seed, generations, population,
+          density, cycleDetector.getPeriod(), cycleDetector.getCycleStart(), runtime);
+    }
+
+    /**
+     * Steps a generation once a permit is free, then lets the other boards on the carrier thread run.
+     */
+    private void step(BitGridEngine engine, Semaphore stepPermits) throws InterruptedException
+    {
+      if(stepPermits == null)
+      {
+        engine.step();
+        return;
+      }
+
+      stepPermits.acquire();
+
+      try
+      {
+        engine.step();
+      }
+      finally
+      {
+        stepPermits.release();
+      }
+      Thread.yield();
+    }
+  }
+}